@@ -0,0 +1,121 @@
+package android.os;
+
+/**
+ * Plain JVM stand-in for the Android <tt>Handler</tt>, used by the benchmarks only.
+ * @author antoniochen
+ */
+public class Handler {
+    private final Looper mLooper;
+    private final Callback mCallback;
+
+    public interface Callback {
+        boolean handleMessage(Message msg);
+    }
+
+    public Handler() {
+        this(Looper.myLooper(), null);
+    }
+
+    public Handler(Callback callback) {
+        this(Looper.myLooper(), callback);
+    }
+
+    public Handler(Looper looper) {
+        this(looper, null);
+    }
+
+    public Handler(Looper looper, Callback callback) {
+        if (looper == null) {
+            throw new RuntimeException("Can't create handler inside thread that has not called Looper.prepare()");
+        }
+
+        mLooper   = looper;
+        mCallback = callback;
+    }
+
+    public void handleMessage(Message msg) {
+    }
+
+    public void dispatchMessage(Message msg) {
+        if (msg.callback != null) {
+            msg.callback.run();
+        } else if (mCallback == null || !mCallback.handleMessage(msg)) {
+            handleMessage(msg);
+        }
+    }
+
+    public final Looper getLooper() {
+        return mLooper;
+    }
+
+    public final Message obtainMessage(int what) {
+        return Message.obtain(this, what);
+    }
+
+    public final Message obtainMessage(int what, Object obj) {
+        return Message.obtain(this, what, obj);
+    }
+
+    public final boolean post(Runnable r) {
+        return postDelayed(r, 0);
+    }
+
+    public final boolean postDelayed(Runnable r, long delayMillis) {
+        final Message msg = Message.obtain(this, 0);
+        msg.callback = r;
+        return sendMessageDelayed(msg, delayMillis);
+    }
+
+    public final boolean postAtTime(Runnable r, long uptimeMillis) {
+        final Message msg = Message.obtain(this, 0);
+        msg.callback = r;
+        return sendMessageAtTime(msg, uptimeMillis);
+    }
+
+    public final boolean postAtTime(Runnable r, Object token, long uptimeMillis) {
+        final Message msg = Message.obtain(this, r);
+        msg.obj = token;
+        return sendMessageAtTime(msg, uptimeMillis);
+    }
+
+    public final void removeCallbacks(Runnable r) {
+        mLooper.mQueue.removeMessages(this, 0, r, null);
+    }
+
+    public final void removeCallbacksAndMessages(Object token) {
+        mLooper.mQueue.removeCallbacksAndMessages(this, token);
+    }
+
+    public final boolean sendMessage(Message msg) {
+        return sendMessageDelayed(msg, 0);
+    }
+
+    public final boolean sendEmptyMessage(int what) {
+        return sendMessageDelayed(Message.obtain(this, what), 0);
+    }
+
+    public final boolean sendEmptyMessageDelayed(int what, long delayMillis) {
+        return sendMessageDelayed(Message.obtain(this, what), delayMillis);
+    }
+
+    public final boolean sendMessageDelayed(Message msg, long delayMillis) {
+        return sendMessageAtTime(msg, SystemClock.uptimeMillis() + Math.max(delayMillis, 0));
+    }
+
+    public boolean sendMessageAtTime(Message msg, long uptimeMillis) {
+        msg.target = this;
+        return mLooper.mQueue.enqueueMessage(msg, uptimeMillis);
+    }
+
+    public final boolean hasMessages(int what) {
+        return mLooper.mQueue.hasMessages(this, what, null);
+    }
+
+    public final void removeMessages(int what) {
+        mLooper.mQueue.removeMessages(this, what, null, null);
+    }
+
+    public final void removeMessages(int what, Object object) {
+        mLooper.mQueue.removeMessages(this, what, null, object);
+    }
+}
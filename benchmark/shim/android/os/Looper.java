@@ -0,0 +1,62 @@
+package android.os;
+
+/**
+ * Plain JVM stand-in for the Android <tt>Looper</tt>, used by the benchmarks
+ * only. The main looper runs on a daemon thread, started on first use.
+ * @author antoniochen
+ */
+public final class Looper {
+    private static final ThreadLocal<Looper> sThreadLocal = new ThreadLocal<Looper>();
+    private static Looper sMainLooper;
+
+    /* package */ final MessageQueue mQueue;
+    private final Thread mThread;
+
+    private Looper() {
+        mQueue  = new MessageQueue();
+        mThread = Thread.currentThread();
+    }
+
+    public static void prepare() {
+        if (sThreadLocal.get() != null) {
+            throw new RuntimeException("Only one Looper may be created per thread");
+        }
+
+        sThreadLocal.set(new Looper());
+    }
+
+    public static synchronized Looper getMainLooper() {
+        if (sMainLooper == null) {
+            final HandlerThread thread = new HandlerThread("main");
+            thread.setDaemon(true);
+            thread.start();
+            sMainLooper = thread.getLooper();
+        }
+
+        return sMainLooper;
+    }
+
+    public static Looper myLooper() {
+        return sThreadLocal.get();
+    }
+
+    public static void loop() {
+        final Looper looper = myLooper();
+        if (looper == null) {
+            throw new RuntimeException("No Looper; Looper.prepare() wasn't called on this thread.");
+        }
+
+        Message msg;
+        while ((msg = looper.mQueue.next()) != null) {
+            msg.target.dispatchMessage(msg);
+        }
+    }
+
+    public void quit() {
+        mQueue.quit();
+    }
+
+    public Thread getThread() {
+        return mThread;
+    }
+}
@@ -0,0 +1,46 @@
+package android.os;
+
+/**
+ * Plain JVM stand-in for the Android <tt>Message</tt>, used by the benchmarks only.
+ * @author antoniochen
+ */
+public final class Message {
+    public int what;
+    public int arg1;
+    public int arg2;
+    public Object obj;
+    public Handler target;
+
+    /* package */ long when;
+    /* package */ Message next;
+    /* package */ Runnable callback;
+
+    public static Message obtain() {
+        return new Message();
+    }
+
+    public static Message obtain(Handler h, int what) {
+        return obtain(h, what, null);
+    }
+
+    public static Message obtain(Handler h, Runnable callback) {
+        final Message msg = obtain(h, 0, null);
+        msg.callback = callback;
+        return msg;
+    }
+
+    public static Message obtain(Handler h, int what, Object obj) {
+        final Message msg = new Message();
+        msg.target = h;
+        msg.what = what;
+        msg.obj  = obj;
+        return msg;
+    }
+
+    public void recycle() {
+    }
+
+    public void sendToTarget() {
+        target.sendMessage(this);
+    }
+}
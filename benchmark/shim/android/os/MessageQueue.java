@@ -0,0 +1,125 @@
+package android.os;
+
+/**
+ * Plain JVM stand-in for the Android <tt>MessageQueue</tt>, used by the
+ * benchmarks only. The messages are linked in the order of their time, a
+ * message which is not earlier than the last message is appended directly.
+ * @author antoniochen
+ */
+public final class MessageQueue {
+    private Message mMessages;
+    private Message mLast;
+    private boolean mQuitting;
+
+    /* package */ synchronized boolean enqueueMessage(Message msg, long when) {
+        if (mQuitting) {
+            return false;
+        }
+
+        msg.when = when;
+        Message prev = null, next = mMessages;
+        if (mLast != null && mLast.when <= when) {
+            prev = mLast;
+            next = null;
+        } else {
+            while (next != null && next.when <= when) {
+                prev = next;
+                next = next.next;
+            }
+        }
+
+        msg.next = next;
+        if (next == null) {
+            mLast = msg;
+        }
+
+        if (prev == null) {
+            mMessages = msg;
+            notifyAll();
+        } else {
+            prev.next = msg;
+        }
+
+        return true;
+    }
+
+    /* package */ synchronized Message next() {
+        while (!mQuitting) {
+            final Message msg = mMessages;
+            final long now = SystemClock.uptimeMillis();
+            if (msg != null && msg.when <= now) {
+                if ((mMessages = msg.next) == null) {
+                    mLast = null;
+                }
+
+                msg.next = null;
+                return msg;
+            }
+
+            try {
+                wait(msg != null ? msg.when - now : 0);
+            } catch (InterruptedException e) {
+                return null;
+            }
+        }
+
+        return null;
+    }
+
+    /* package */ synchronized void quit() {
+        mQuitting = true;
+        notifyAll();
+    }
+
+    /* package */ synchronized boolean hasMessages(Handler h, int what, Object object) {
+        for (Message msg = mMessages; msg != null; msg = msg.next) {
+            if (msg.target == h && msg.what == what && (object == null || msg.obj == object)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /* package */ synchronized void removeMessages(Handler h, int what, Runnable callback, Object object) {
+        Message prev = null;
+        for (Message msg = mMessages; msg != null; msg = msg.next) {
+            final boolean matches = (msg.target == h && (callback != null ? msg.callback == callback : msg.what == what)
+                    && (object == null || msg.obj == object));
+            if (!matches) {
+                prev = msg;
+                continue;
+            }
+
+            if (prev == null) {
+                mMessages = msg.next;
+            } else {
+                prev.next = msg.next;
+            }
+
+            if (msg == mLast) {
+                mLast = prev;
+            }
+        }
+    }
+
+    /* package */ synchronized void removeCallbacksAndMessages(Handler h, Object object) {
+        Message prev = null;
+        for (Message msg = mMessages; msg != null; msg = msg.next) {
+            if (msg.target != h || (object != null && msg.obj != object)) {
+                prev = msg;
+                continue;
+            }
+
+            if (prev == null) {
+                mMessages = msg.next;
+            } else {
+                prev.next = msg.next;
+            }
+
+            if (msg == mLast) {
+                mLast = prev;
+            }
+        }
+    }
+}
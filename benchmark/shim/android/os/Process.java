@@ -0,0 +1,14 @@
+package android.os;
+
+/**
+ * Plain JVM stand-in for the Android <tt>Process</tt>, used by the benchmarks only.
+ * The thread priorities are ignored.
+ * @author antoniochen
+ */
+public class Process {
+    public static final int THREAD_PRIORITY_DEFAULT = 0;
+    public static final int THREAD_PRIORITY_BACKGROUND = 10;
+
+    public static void setThreadPriority(int priority) {
+    }
+}
@@ -0,0 +1,15 @@
+package android.os;
+
+/**
+ * Plain JVM stand-in for the Android <tt>SystemClock</tt>, used by the benchmarks only.
+ * @author antoniochen
+ */
+public final class SystemClock {
+    public static long uptimeMillis() {
+        return System.nanoTime() / 1000000;
+    }
+
+    public static long elapsedRealtime() {
+        return System.nanoTime() / 1000000;
+    }
+}
@@ -0,0 +1,45 @@
+package android.util;
+
+/**
+ * Plain JVM stand-in for the Android <tt>Log</tt>, used by the benchmarks only.
+ * The warnings and errors are printed to the standard error.
+ * @author antoniochen
+ */
+public final class Log {
+    public static int v(String tag, String msg) {
+        return 0;
+    }
+
+    public static int d(String tag, String msg) {
+        return 0;
+    }
+
+    public static int i(String tag, String msg) {
+        return 0;
+    }
+
+    public static int w(String tag, String msg) {
+        return w(tag, msg, null);
+    }
+
+    public static int w(String tag, String msg, Throwable tr) {
+        return println("W/", tag, msg, tr);
+    }
+
+    public static int e(String tag, String msg) {
+        return e(tag, msg, null);
+    }
+
+    public static int e(String tag, String msg, Throwable tr) {
+        return println("E/", tag, msg, tr);
+    }
+
+    private static int println(String priority, String tag, String msg, Throwable tr) {
+        System.err.println(priority + tag + ": " + msg);
+        if (tr != null) {
+            tr.printStackTrace();
+        }
+
+        return 0;
+    }
+}
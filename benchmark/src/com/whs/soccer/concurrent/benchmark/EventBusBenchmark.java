@@ -0,0 +1,240 @@
+package com.whs.soccer.concurrent.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.whs.soccer.concurrent.EventBus;
+import com.whs.soccer.concurrent.EventBus.ThreadMode;
+import com.whs.soccer.concurrent.EventReceiver;
+
+/**
+ * Class EventBusBenchmark measures the {@link EventBus} delivery for each
+ * {@link ThreadMode}, subscriber count and payload size on a plain JVM. The
+ * Android classes are replaced by the stand-ins of <tt>benchmark/shim</tt>,
+ * the main looper runs on a daemon thread.
+ * <p>The throughput benchmarks count the events delivered end to end, the
+ * producers wait while more than {@link #WINDOW} deliveries are pending, so
+ * the queues stay bounded. The {@link #latency()} benchmark posts one event
+ * and waits until all subscribers received it, its percentiles are the post
+ * to delivery latency. The <tt>BACKGROUND</tt> and <tt>HANDLER</tt> events
+ * are invoked directly when the producers are not the main thread, the
+ * {@link #postFromMainThread()} benchmark posts from the main looper to
+ * measure their queued delivery.</p>
+ * <p>Build and run, with the JMH jars on the class path:</p><pre>
+ * javac -cp jmh-core.jar:jmh-generator-annprocess.jar -d out \
+ *     -sourcepath benchmark/shim:src benchmark/src/com/whs/soccer/concurrent/benchmark/*.java
+ * java -cp out:jmh-core.jar:jopt-simple.jar:commons-math3.jar \
+ *     com.whs.soccer.concurrent.benchmark.EventBusBenchmark [JMH options]</pre>
+ * <p>The GC profiler is always added to report the allocation rate. The JMH
+ * options narrow or widen the runs, e.g. <tt>-p mode=ASYNC -t 8</tt>.</p>
+ * @author antoniochen
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class EventBusBenchmark {
+    private static final int TOKEN = 1;
+
+    /**
+     * The maximum number of pending deliveries.
+     */
+    private static final int WINDOW = 4096;
+
+    /**
+     * The number of posts between the checks of the pending deliveries.
+     */
+    private static final int CHECK_INTERVAL = 64;
+
+    /**
+     * The number of events posted by each main thread task.
+     */
+    private static final int BATCH = 256;
+
+    @Param({ "POST", "ASYNC", "SEQUENCE", "SINGLE", "BACKGROUND", "HANDLER" })
+    public ThreadMode mode;
+
+    @Param({ "1", "4", "16" })
+    public int subscribers;
+
+    /**
+     * The number of arguments of each event.
+     */
+    @Param({ "0", "1", "8" })
+    public int payload;
+
+    private EventBus mEventBus;
+    private Receiver[] mReceivers;
+    private Runnable mBatchTask;
+    private final AtomicLong mPosted = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        mEventBus  = new EventBus();
+        mReceivers = new Receiver[subscribers];
+        for (int i = 0; i < subscribers; ++i) {
+            mEventBus.register(TOKEN, mReceivers[i] = new Receiver());
+        }
+
+        mBatchTask = new Runnable() {
+            @Override
+            public void run() {
+                mPosted.addAndGet((long)subscribers * BATCH);
+                for (int i = 0; i < BATCH; ++i) {
+                    mEventBus.post(TOKEN, mode, newArgs());
+                }
+            }
+        };
+    }
+
+    @TearDown(Level.Iteration)
+    public void drain() throws InterruptedException {
+        // Waits for the pending deliveries, so the iterations don't overlap.
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (getPendingCount() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        mEventBus.unregisterAll();
+    }
+
+    @Benchmark
+    @Threads(1)
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void postSingleProducer(Producer producer) {
+        post(producer);
+    }
+
+    @Benchmark
+    @Threads(4)
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void postMultiProducer(Producer producer) {
+        post(producer);
+    }
+
+    @Benchmark
+    @Threads(1)
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @OperationsPerInvocation(BATCH)
+    public void postFromMainThread() {
+        while (getPendingCount() > WINDOW) {
+            Thread.yield();
+        }
+
+        EventBus.runOnUIThreadBlocking(mBatchTask);
+    }
+
+    @Benchmark
+    @Threads(1)
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void latency() {
+        final long target = getDeliveredCount() + subscribers;
+        mPosted.addAndGet(subscribers);
+        mEventBus.post(TOKEN, mode, newArgs());
+        while (getDeliveredCount() < target) {
+            Thread.yield();
+        }
+    }
+
+    private void post(Producer producer) {
+        if (++producer.count % CHECK_INTERVAL == 0) {
+            while (getPendingCount() > WINDOW) {
+                Thread.yield();
+            }
+        }
+
+        mPosted.addAndGet(subscribers);
+        mEventBus.post(TOKEN, mode, newArgs());
+    }
+
+    /**
+     * Returns a new arguments array per event, as the varargs callers do.
+     */
+    private Object[] newArgs() {
+        if (payload == 0) {
+            return null;
+        }
+
+        final Object[] args = new Object[payload];
+        for (int i = 0; i < payload; ++i) {
+            args[i] = Receiver.ARGUMENT;
+        }
+
+        return args;
+    }
+
+    private long getDeliveredCount() {
+        long count = 0;
+        for (Receiver receiver : mReceivers) {
+            count += receiver.count.get();
+        }
+
+        return count;
+    }
+
+    /**
+     * Returns the number of posted deliveries which were neither delivered nor conflated.
+     */
+    private long getPendingCount() {
+        return mPosted.get() - getDeliveredCount() - mEventBus.getConflatedCount();
+    }
+
+    /**
+     * Class Producer
+     */
+    @State(Scope.Thread)
+    public static class Producer {
+        /* package */ int count;
+    }
+
+    /**
+     * Class Receiver
+     */
+    private static final class Receiver implements EventReceiver {
+        /* package */ static final Object ARGUMENT = Integer.valueOf(42);
+        /* package */ final AtomicLong count = new AtomicLong();
+
+        @Override
+        public void onReceiveEvent(int token, Object[] args) {
+            count.incrementAndGet();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        final CommandLineOptions options = new CommandLineOptions(args);
+        final ChainedOptionsBuilder builder = new OptionsBuilder().parent(options).addProfiler(GCProfiler.class);
+        if (options.getIncludes().isEmpty()) {
+            builder.include(EventBusBenchmark.class.getName());
+        }
+
+        new Runner(builder.build()).run();
+    }
+}
@@ -0,0 +1,185 @@
+package com.whs.soccer.concurrent.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.whs.soccer.concurrent.EventBus;
+import com.whs.soccer.concurrent.EventBus.ThreadMode;
+import com.whs.soccer.concurrent.EventReceiver;
+import com.whs.soccer.concurrent.SubscriberIndex;
+
+/**
+ * Class InvokerBenchmark compares the direct invokers of the {@link EventBus}
+ * subscribers with the reflective <tt>Method.invoke</tt> for each {@link ThreadMode}.
+ * The <tt>INDEXED</tt> subscriber is called by a {@link SubscriberIndex}, written
+ * as the <tt>SubscriberIndexProcessor</tt> generates it, the <tt>RECEIVER</tt>
+ * subscriber implements {@link EventReceiver}, and the <tt>REFLECTIVE</tt>
+ * subscriber only declares the <tt>onEvent</tt> method.
+ * <p>The <tt>POST</tt> thread mode calls the subscriber in the posting thread,
+ * so its difference is the invoker alone, the other thread modes show how much
+ * of the queued delivery the invoker is. The <tt>FRAME</tt> thread mode is left
+ * out, it conflates the events of a frame without counting them.</p>
+ * <p>Build and run as {@link EventBusBenchmark}, replacing its class name.</p>
+ * @author antoniochen
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class InvokerBenchmark {
+    private static final int TOKEN = 1;
+
+    /**
+     * The maximum number of pending deliveries.
+     */
+    private static final int WINDOW = 4096;
+
+    /**
+     * The number of posts between the checks of the pending deliveries.
+     */
+    private static final int CHECK_INTERVAL = 64;
+
+    /**
+     * The count of the delivered events, shared by all subscribers.
+     */
+    /* package */ static final AtomicLong delivered = new AtomicLong();
+
+    @Param({ "POST", "MAIN", "ASYNC", "SINGLE", "HANDLER", "SEQUENCE", "BACKGROUND", "KEYED", "PRIORITY" })
+    public ThreadMode mode;
+
+    @Param({ "INDEXED", "RECEIVER", "REFLECTIVE" })
+    public String invoker;
+
+    private EventBus mEventBus;
+    private Object mSubscriber;
+    private Object[] mArgs;
+    private long mPosted;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        EventBus.addIndex(new Index());
+        mEventBus = new EventBus();
+        mArgs = new Object[] { Integer.valueOf(42) };
+        if ("INDEXED".equals(invoker)) {
+            mSubscriber = new IndexedSubscriber();
+        } else if ("RECEIVER".equals(invoker)) {
+            mSubscriber = new ReceiverSubscriber();
+        } else {
+            mSubscriber = new ReflectiveSubscriber();
+        }
+
+        mEventBus.register(TOKEN, mSubscriber);
+    }
+
+    @TearDown(Level.Iteration)
+    public void drain() throws InterruptedException {
+        // Waits for the pending deliveries, so the iterations don't overlap.
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (getPendingCount() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        mEventBus.unregisterAll();
+    }
+
+    @Benchmark
+    @Threads(1)
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void post() {
+        if (++mPosted % CHECK_INTERVAL == 0) {
+            while (getPendingCount() > WINDOW) {
+                Thread.yield();
+            }
+        }
+
+        mEventBus.post(TOKEN, mode, mArgs);
+    }
+
+    /**
+     * Returns the number of posted events which were neither delivered nor conflated.
+     */
+    private long getPendingCount() {
+        return mPosted - delivered.get() - mEventBus.getConflatedCount();
+    }
+
+    /**
+     * Class IndexedSubscriber
+     */
+    public static final class IndexedSubscriber {
+        public void onEvent(int token, Object[] args) {
+            delivered.incrementAndGet();
+        }
+    }
+
+    /**
+     * Class ReceiverSubscriber
+     */
+    public static final class ReceiverSubscriber implements EventReceiver {
+        @Override
+        public void onReceiveEvent(int token, Object[] args) {
+            delivered.incrementAndGet();
+        }
+    }
+
+    /**
+     * Class ReflectiveSubscriber
+     */
+    public static final class ReflectiveSubscriber {
+        public void onEvent(int token, Object[] args) {
+            delivered.incrementAndGet();
+        }
+    }
+
+    /**
+     * Class Index, the same as the <tt>SubscriberIndexProcessor</tt> generates
+     * for the {@link IndexedSubscriber}.
+     */
+    private static final class Index implements SubscriberIndex {
+        private final Invoker mInvoker = new Invoker(null) {
+            @Override
+            public Object invoke(Object subscriber, int token, Object[] args) {
+                ((IndexedSubscriber)subscriber).onEvent(token, args);
+                return null;
+            }
+        };
+
+        @Override
+        public Invoker getInvoker(Class<?> subscriberClass) {
+            return (subscriberClass == IndexedSubscriber.class ? mInvoker : null);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        final CommandLineOptions options = new CommandLineOptions(args);
+        final ChainedOptionsBuilder builder = new OptionsBuilder().parent(options).addProfiler(GCProfiler.class);
+        if (options.getIncludes().isEmpty()) {
+            builder.include(InvokerBenchmark.class.getName());
+        }
+
+        new Runner(builder.build()).run();
+    }
+}
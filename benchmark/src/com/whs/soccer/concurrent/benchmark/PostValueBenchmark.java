@@ -0,0 +1,195 @@
+package com.whs.soccer.concurrent.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.sun.management.ThreadMXBean;
+import com.whs.soccer.concurrent.EventBus;
+import com.whs.soccer.concurrent.EventBus.ThreadMode;
+import com.whs.soccer.concurrent.EventReceiver;
+import com.whs.soccer.concurrent.ValueEventReceiver;
+
+/**
+ * Class PostValueBenchmark checks that {@link EventBus#postValue} does not
+ * allocate per event. The allocated bytes of all threads, the producer and
+ * the delivering workers, are read from the <tt>ThreadMXBean</tt> around each
+ * iteration and divided by the delivered events.
+ * <p>With the <tt>VALUE</tt> receiver, a {@link ValueEventReceiver}, an iteration
+ * fails if it allocated more than {@link #MAX_BYTES_PER_EVENT} per event. The
+ * <tt>PLAIN</tt> receiver, an {@link EventReceiver}, is only reported, its values
+ * are posted outside the <tt>Long</tt> cache, so each event allocates the boxed
+ * value and nothing else once the arguments array is reused.</p>
+ * <p>Build and run as {@link EventBusBenchmark}, replacing its class name.</p>
+ * @author antoniochen
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PostValueBenchmark {
+    private static final int TOKEN = 1;
+
+    /**
+     * The maximum number of pending deliveries, with {@link #CHECK_INTERVAL}
+     * it keeps the backlog within the pool of the <tt>EventBus</tt> events.
+     */
+    private static final int WINDOW = 128;
+
+    /**
+     * The number of posts between the checks of the pending deliveries.
+     */
+    private static final int CHECK_INTERVAL = 64;
+
+    /**
+     * The allocated bytes allowed per event for the <tt>VALUE</tt> receiver, covers
+     * the allocations of the JMH harness and the JIT amortized over an iteration.
+     */
+    private static final double MAX_BYTES_PER_EVENT = 1.0;
+
+    /**
+     * The first posted value, outside the <tt>Long</tt> cache.
+     */
+    private static final long FIRST_VALUE = 1L << 20;
+
+    @Param({ "POST", "ASYNC", "SEQUENCE", "PRIORITY" })
+    public ThreadMode mode;
+
+    @Param({ "VALUE", "PLAIN" })
+    public String receiver;
+
+    private EventBus mEventBus;
+    private PlainReceiver mReceiver;
+    private ThreadMXBean mThreadBean;
+
+    private long mValue;
+    private long mStartBytes;
+    private long mStartCount;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        mThreadBean = (ThreadMXBean)ManagementFactory.getThreadMXBean();
+        mEventBus = new EventBus();
+        mReceiver = ("VALUE".equals(receiver) ? new ValueReceiver() : new PlainReceiver());
+        mEventBus.register(TOKEN, mReceiver);
+    }
+
+    @Setup(Level.Iteration)
+    public void startIteration() {
+        mValue = FIRST_VALUE;
+        mStartCount = mReceiver.count.get();
+        mStartBytes = getAllocatedBytes();
+    }
+
+    @TearDown(Level.Iteration)
+    public void checkIteration() throws InterruptedException {
+        // Waits for the pending deliveries, so the workers' allocations are counted.
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (getPendingCount() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+
+        final long events = mReceiver.count.get() - mStartCount;
+        if (events > 0) {
+            final double bytesPerEvent = (double)(getAllocatedBytes() - mStartBytes) / events;
+            System.out.println(new StringBuilder(64).append("\nallocated bytes/event = ").append(bytesPerEvent).toString());
+            if (mReceiver instanceof ValueReceiver && bytesPerEvent > MAX_BYTES_PER_EVENT) {
+                throw new IllegalStateException(new StringBuilder("postValue allocated ").append(bytesPerEvent).append(" bytes per event with ").append(mode).toString());
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        mEventBus.unregisterAll();
+    }
+
+    @Benchmark
+    @Threads(1)
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void postValue() {
+        if (++mValue % CHECK_INTERVAL == 0) {
+            while (getPendingCount() > WINDOW) {
+                Thread.yield();
+            }
+        }
+
+        mEventBus.postValue(TOKEN, mode, mValue);
+    }
+
+    /**
+     * Returns the number of posted events which were not delivered yet.
+     */
+    private long getPendingCount() {
+        return (mValue - FIRST_VALUE) - (mReceiver.count.get() - mStartCount);
+    }
+
+    /**
+     * Returns the bytes allocated by all live threads.
+     */
+    private long getAllocatedBytes() {
+        long bytes = 0;
+        final long[] ids = mThreadBean.getAllThreadIds();
+        for (int i = 0; i < ids.length; ++i) {
+            final long allocated = mThreadBean.getThreadAllocatedBytes(ids[i]);
+            if (allocated > 0) {
+                bytes += allocated;
+            }
+        }
+
+        return bytes;
+    }
+
+    /**
+     * Class PlainReceiver
+     */
+    private static class PlainReceiver implements EventReceiver {
+        /* package */ final AtomicLong count = new AtomicLong();
+
+        @Override
+        public void onReceiveEvent(int token, Object[] args) {
+            count.incrementAndGet();
+        }
+    }
+
+    /**
+     * Class ValueReceiver
+     */
+    private static final class ValueReceiver extends PlainReceiver implements ValueEventReceiver {
+        @Override
+        public void onReceiveEvent(int token, long value) {
+            count.incrementAndGet();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        final CommandLineOptions options = new CommandLineOptions(args);
+        final ChainedOptionsBuilder builder = new OptionsBuilder().parent(options).addProfiler(GCProfiler.class);
+        if (options.getIncludes().isEmpty()) {
+            builder.include(PostValueBenchmark.class.getName());
+        }
+
+        new Runner(builder.build()).run();
+    }
+}
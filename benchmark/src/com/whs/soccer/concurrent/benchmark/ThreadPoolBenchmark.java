@@ -0,0 +1,163 @@
+package com.whs.soccer.concurrent.benchmark;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Message;
+
+import com.whs.soccer.concurrent.ThreadPool;
+
+/**
+ * Class ThreadPoolBenchmark measures a saturated {@link ThreadPool}: each
+ * invocation executes {@link #BATCH} short tasks on {@link #MAX_THREADS}
+ * threads and waits for them, so most tasks wait in the pending queue. The
+ * <tt>handlerMessages</tt> counter is the number of messages sent to the
+ * handler of the pool, that is the load the pool puts on the main thread.
+ * The main thread is kept busy for <tt>uiBusyMillis</tt> of each 16 ms frame.
+ * <p>Build and run as the {@link EventBusBenchmark}, with the class name
+ * <tt>com.whs.soccer.concurrent.benchmark.ThreadPoolBenchmark</tt>.</p>
+ * @author antoniochen
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ThreadPoolBenchmark {
+    private static final int MAX_THREADS = 4;
+    private static final int BATCH = 256;
+    private static final long FRAME_MILLIS = 16;
+
+    /**
+     * The time (in milliseconds) the main thread is busy in each frame.
+     */
+    @Param({ "0", "8" })
+    public long uiBusyMillis;
+
+    /**
+     * The amount of work of each task, in {@link Blackhole#consumeCPU(long)} tokens.
+     */
+    @Param({ "1000" })
+    public long work;
+
+    private ThreadPool mThreadPool;
+    private CountingHandler mHandler;
+    private volatile boolean mRunning;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        mRunning = true;
+        mHandler = new CountingHandler(Looper.getMainLooper());
+        mThreadPool = new ThreadPool(MAX_THREADS, mHandler);
+        if (uiBusyMillis > 0) {
+            // Simulates the frames of a busy UI, with a separate handler.
+            new Handler(Looper.getMainLooper()).post(new Runnable() {
+                @Override
+                public void run() {
+                    if (mRunning) {
+                        final long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(uiBusyMillis);
+                        while (System.nanoTime() < end) {
+                            Blackhole.consumeCPU(100);
+                        }
+
+                        new Handler(Looper.getMainLooper()).postDelayed(this, FRAME_MILLIS - uiBusyMillis);
+                    }
+                }
+            });
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        mRunning = false;
+        mThreadPool.shutdown();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @OperationsPerInvocation(BATCH)
+    public void executeSaturated(Counters counters) throws InterruptedException {
+        final long messages = mHandler.count.get();
+        final CountDownLatch latch = new CountDownLatch(BATCH);
+        final Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                Blackhole.consumeCPU(work);
+                latch.countDown();
+            }
+        };
+
+        for (int i = 0; i < BATCH; ++i) {
+            mThreadPool.execute(task);
+        }
+
+        latch.await();
+        counters.handlerMessages += mHandler.count.get() - messages;
+    }
+
+    /**
+     * Class Counters
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+        public long handlerMessages;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            handlerMessages = 0;
+        }
+    }
+
+    /**
+     * Class CountingHandler
+     */
+    private static final class CountingHandler extends Handler {
+        /* package */ final AtomicLong count = new AtomicLong();
+
+        public CountingHandler(Looper looper) {
+            super(looper);
+        }
+
+        @Override
+        public boolean sendMessageAtTime(Message msg, long uptimeMillis) {
+            count.incrementAndGet();
+            return super.sendMessageAtTime(msg, uptimeMillis);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        final CommandLineOptions options = new CommandLineOptions(args);
+        final ChainedOptionsBuilder builder = new OptionsBuilder().parent(options).addProfiler(GCProfiler.class);
+        if (options.getIncludes().isEmpty()) {
+            builder.include(ThreadPoolBenchmark.class.getName());
+        }
+
+        new Runner(builder.build()).run();
+    }
+}
@@ -0,0 +1,196 @@
+package com.whs.soccer.concurrent.compiler;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.TypeKind;
+import javax.tools.Diagnostic.Kind;
+
+/**
+ * Class SubscriberIndexProcessor generates a <tt>SubscriberIndex</tt> from the
+ * methods annotated with <tt>com.whs.soccer.concurrent.Subscribe</tt>. The fully
+ * qualified name of the generated class is passed by the processor option
+ * <tt>-AeventBusIndex=com.example.EventBusIndex</tt>. The application adds an
+ * instance of the generated class by <tt>EventBus.addIndex</tt> at startup.
+ * <p>The index is written in the first round which sees the annotated methods,
+ * so the compiler still processes the generated source. The <tt>@Subscribe</tt>
+ * methods of the sources generated by the later rounds are not indexed, they
+ * are reported as errors.</p>
+ * <p>This processor runs in the compiler, not in the application, so it is
+ * built separately from the application sources.</p>
+ * @author antoniochen
+ */
+@SupportedOptions(SubscriberIndexProcessor.OPTION_INDEX)
+@SupportedAnnotationTypes(SubscriberIndexProcessor.SUBSCRIBE)
+public final class SubscriberIndexProcessor extends AbstractProcessor {
+    /* package */ static final String OPTION_INDEX = "eventBusIndex";
+    /* package */ static final String SUBSCRIBE = "com.whs.soccer.concurrent.Subscribe";
+
+    /**
+     * The map of the subscriber classes to their event method.
+     */
+    private final Map<TypeElement, ExecutableElement> mMethods = new LinkedHashMap<TypeElement, ExecutableElement>();
+
+    /**
+     * Whether the index has been written.
+     */
+    private boolean mWritten;
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (mWritten) {
+                    error(element, "The @Subscribe method of a generated source can't be indexed");
+                } else if (checkMethod(element)) {
+                    final TypeElement clazz = (TypeElement)element.getEnclosingElement();
+                    if (mMethods.containsKey(clazz)) {
+                        error(element, "A class may have at most one @Subscribe method");
+                    } else {
+                        mMethods.put(clazz, (ExecutableElement)element);
+                    }
+                }
+            }
+        }
+
+        if (!mWritten && !mMethods.isEmpty()) {
+            mWritten = true;
+            final String indexName = processingEnv.getOptions().get(OPTION_INDEX);
+            if (indexName == null) {
+                processingEnv.getMessager().printMessage(Kind.ERROR, "The processor option -A" + OPTION_INDEX + " is required");
+            } else {
+                writeIndex(indexName);
+            }
+        }
+
+        return true;
+    }
+
+    private boolean checkMethod(Element element) {
+        if (element.getKind() != ElementKind.METHOD) {
+            error(element, "@Subscribe must be applied to a method");
+            return false;
+        }
+
+        final ExecutableElement method = (ExecutableElement)element;
+        final Set<Modifier> modifiers = method.getModifiers();
+        if (!modifiers.contains(Modifier.PUBLIC) || modifiers.contains(Modifier.STATIC)) {
+            error(element, "The @Subscribe method must be public and not static");
+            return false;
+        }
+
+        final List<? extends VariableElement> params = method.getParameters();
+        if (params.size() != 2 || params.get(0).asType().getKind() != TypeKind.INT
+            || params.get(1).asType().getKind() != TypeKind.ARRAY || !((ArrayType)params.get(1).asType()).getComponentType().toString().equals("java.lang.Object")) {
+            error(element, "The @Subscribe method prototype must be: public void|Object name(int token, Object[] args)");
+            return false;
+        }
+
+        for (Element clazz = method.getEnclosingElement(); clazz instanceof TypeElement; clazz = clazz.getEnclosingElement()) {
+            if (!clazz.getModifiers().contains(Modifier.PUBLIC) || (((TypeElement)clazz).getNestingKind() == NestingKind.MEMBER && !clazz.getModifiers().contains(Modifier.STATIC))) {
+                error(element, "The class of the @Subscribe method must be public (and static if it is nested)");
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private void writeIndex(String indexName) {
+        final int index = indexName.lastIndexOf('.');
+        final String packageName = (index > 0 ? indexName.substring(0, index) : null);
+        final String className = indexName.substring(index + 1);
+
+        PrintWriter writer = null;
+        try {
+            writer = new PrintWriter(processingEnv.getFiler().createSourceFile(indexName).openWriter());
+            if (packageName != null) {
+                writer.append("package ").append(packageName).append(";\n\n");
+            }
+
+            writer.append("import java.util.HashMap;\n")
+                  .append("import java.util.Map;\n\n")
+                  .append("import com.whs.soccer.concurrent.EventBus.ThreadMode;\n")
+                  .append("import com.whs.soccer.concurrent.SubscriberIndex;\n\n")
+                  .append("/**\n * Generated by SubscriberIndexProcessor, do not modify.\n */\n")
+                  .append("public final class ").append(className).append(" implements SubscriberIndex {\n")
+                  .append("    private final Map<Class<?>, Invoker> mInvokers = new HashMap<Class<?>, Invoker>();\n\n")
+                  .append("    public ").append(className).append("() {\n");
+
+            for (Map.Entry<TypeElement, ExecutableElement> entry : mMethods.entrySet()) {
+                final String subscriberClass = entry.getKey().getQualifiedName().toString();
+                final ExecutableElement method = entry.getValue();
+                writer.append("        mInvokers.put(").append(subscriberClass).append(".class, new Invoker(").append(getThreadMode(method)).append(") {\n")
+                      .append("            @Override\n")
+                      .append("            public Object invoke(Object subscriber, int token, Object[] args) {\n");
+
+                if (method.getReturnType().getKind() == TypeKind.VOID) {
+                    writer.append("                ((").append(subscriberClass).append(")subscriber).").append(method.getSimpleName()).append("(token, args);\n")
+                          .append("                return null;\n");
+                } else {
+                    writer.append("                return ((").append(subscriberClass).append(")subscriber).").append(method.getSimpleName()).append("(token, args);\n");
+                }
+
+                writer.append("            }\n")
+                      .append("        });\n");
+            }
+
+            writer.append("    }\n\n")
+                  .append("    @Override\n")
+                  .append("    public Invoker getInvoker(Class<?> subscriberClass) {\n")
+                  .append("        return mInvokers.get(subscriberClass);\n")
+                  .append("    }\n")
+                  .append("}\n");
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Kind.ERROR, "Couldn't write " + indexName + " - " + e);
+        } finally {
+            if (writer != null) {
+                writer.close();
+            }
+        }
+    }
+
+    private static String getThreadMode(ExecutableElement method) {
+        for (AnnotationMirror annotation : method.getAnnotationMirrors()) {
+            if (annotation.getAnnotationType().toString().equals(SUBSCRIBE)) {
+                for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : annotation.getElementValues().entrySet()) {
+                    // The element values hold only the explicit values, an omitted mode inherits
+                    // the thread mode passed by the poster, an explicit mode, even POST, is forced.
+                    if (entry.getKey().getSimpleName().contentEquals("mode")) {
+                        return "ThreadMode." + ((VariableElement)entry.getValue().getValue()).getSimpleName();
+                    }
+                }
+            }
+        }
+
+        return "null";
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Kind.ERROR, message, element);
+    }
+}
@@ -1,23 +1,36 @@
 package com.whs.soccer.concurrent;
 
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
 import java.lang.reflect.Method;
-import java.util.Queue;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 import android.os.Handler;
 import android.os.Handler.Callback;
 import android.os.HandlerThread;
 import android.os.Looper;
 import android.os.Message;
+import android.os.SystemClock;
 import android.util.Log;
-import android.util.SparseArray;
 
 import com.whs.soccer.utils.Pools;
 import com.whs.soccer.utils.Pools.Factory;
@@ -74,7 +87,10 @@ public final class EventBus {
          * Events will be called in a background thread. This is always independent
          * from the posting thread and the main thread. EventBus uses <b>a single</b>
          * background thread, that will deliver all its events sequentially. Unlike
-         * {@link #SEQUENCE} mode, the same event can not be posting at the same time.
+         * {@link #SEQUENCE} mode, the events are conflated: if an event with the same
+         * token and subscriber is still pending, the event will not be queued again,
+         * only its arguments will be replaced with the latest arguments.
+         * @see EventBus#getConflatedCount()
          */
         SINGLE {
             @Override
@@ -101,7 +117,8 @@ public final class EventBus {
          * Events will be called in a background thread. This is always independent
          * from the posting thread and the main thread. Unlike {@link #ASYNC} mode,
          * EventBus uses <b>a single</b> background thread, that will deliver all its
-         * events sequentially.
+         * events sequentially. The pending queue may be bounded by
+         * {@link EventBus#setQueueCapacity(ThreadMode, int, OverflowPolicy)}.
          */
         SEQUENCE {
             @Override
@@ -114,13 +131,61 @@ public final class EventBus {
          * Events will be called in a background thread. If posting thread is not the
          * main thread, event methods will be called directly in the posting thread.
          * If the posting thread is the main thread, EventBus uses <b>a single</b>
-         * background thread, that will deliver all its events sequentially.
+         * background thread, that will deliver all its events sequentially. The pending
+         * queue may be bounded by {@link EventBus#setQueueCapacity(ThreadMode, int, OverflowPolicy)}.
          */
         BACKGROUND {
             @Override
             protected EventHandler newEventHandler() {
                 return new BackgoundHandler();
             }
+        },
+
+        /**
+         * Events will be called in a background thread. This is always independent
+         * from the posting thread and the main thread. Events with the same key will
+         * be delivered sequentially, events with different keys may be delivered in
+         * parallel on the {@link EventBus#getExecutor()}. The key is passed by
+         * {@link EventBus#postKeyed}, the events posted by {@link EventBus#post} use
+         * the token as the key.
+         */
+        KEYED {
+            @Override
+            protected EventHandler newEventHandler() {
+                return new KeyedHandler();
+            }
+        },
+
+        /**
+         * Events will be called in Android's main thread (UI thread), batched once per
+         * frame. The events posted between two frames are delivered together at the next
+         * frame, and the events with the same token and subscriber in a frame are conflated,
+         * only the latest arguments will be delivered. If the delivery of a frame exceeds the
+         * frame time budget, the remaining events are delivered at the next frame, so that
+         * a burst of events does not block the main thread for more than the budget.
+         */
+        FRAME {
+            @Override
+            protected EventHandler newEventHandler() {
+                return new FrameHandler();
+            }
+        },
+
+        /**
+         * Events will be called in a background thread. This is always independent
+         * from the posting thread and the main thread. EventBus uses <b>a single</b>
+         * background thread, that will deliver the events with the higher priority
+         * first. The priority is passed by {@link EventBus#postPriority}, the events
+         * posted by {@link EventBus#post} have the priority <tt>0</tt>. To avoid the
+         * starvation, the pending events are aged: an event never waits longer than
+         * <em>50</em> milliseconds per priority level behind the events with the
+         * higher priority posted after it.
+         */
+        PRIORITY {
+            @Override
+            protected EventHandler newEventHandler() {
+                return new PriorityHandler();
+            }
         };
 
         /**
@@ -130,6 +195,341 @@ public final class EventBus {
         protected abstract EventHandler newEventHandler();
     }
 
+    /**
+     * Determines what happens when an event is posted to a full pending queue.
+     * @see EventBus#setQueueCapacity(ThreadMode, int, OverflowPolicy)
+     */
+    public static enum OverflowPolicy {
+        /**
+         * The posting thread waits until the queue has space. If the posting thread
+         * is the thread delivering the queue's events, or a worker of the default
+         * {@link WorkerPool} executor, the event is queued anyway, to avoid a deadlock.
+         */
+        BLOCK,
+
+        /**
+         * The oldest pending event is discarded to make room for the posted event.
+         */
+        DROP_OLDEST,
+
+        /**
+         * The posted event is discarded.
+         */
+        DROP_NEWEST,
+
+        /**
+         * The posted event is discarded and the post throws a
+         * {@link RejectedExecutionException}.
+         */
+        FAIL
+    }
+
+    /**
+     * Determines how often the events of a token are delivered, when they are posted
+     * faster than the subscribers need them. Only the latest arguments are delivered,
+     * the superseded events are discarded. The policies run on the timer of the
+     * <tt>EventBus</tt>, so the delayed {@link ThreadMode#POST} events will be
+     * called in the timer thread.
+     * @see EventBus#setRatePolicy(int, RatePolicy, long)
+     * @see EventBus#postWithPolicy(int, ThreadMode, RatePolicy, long, Object[])
+     */
+    public static enum RatePolicy {
+        /**
+         * The latest event is delivered once no event was posted for the interval,
+         * such as the search text after the user stops typing.
+         */
+        DEBOUNCE,
+
+        /**
+         * The first event is delivered immediately, then at most one event per interval.
+         * The latest event posted during an interval is always delivered at the end of
+         * the interval, so the subscribers never miss the final state.
+         */
+        THROTTLE,
+
+        /**
+         * The latest event is delivered once per interval, as long as
+         * the events are posted, such as a slider position.
+         */
+        SAMPLE
+    }
+
+    /**
+     * Class QueueStats is a snapshot of the statistics of a pending queue.
+     * @see EventBus#getQueueStats(ThreadMode)
+     */
+    public static final class QueueStats {
+        /**
+         * The maximum number of pending events, <tt>Integer.MAX_VALUE</tt> if unbounded.
+         */
+        public final int capacity;
+
+        /**
+         * The number of pending events at the time of the snapshot.
+         */
+        public final int depth;
+
+        /**
+         * The maximum number of pending events since the queue was created.
+         */
+        public final int highWaterMark;
+
+        /**
+         * The number of events discarded by the {@link OverflowPolicy}.
+         */
+        public final long dropCount;
+
+        /* package */ QueueStats(int capacity, int depth, int highWaterMark, long dropCount) {
+            this.capacity  = capacity;
+            this.depth     = depth;
+            this.dropCount = dropCount;
+            this.highWaterMark = highWaterMark;
+        }
+
+        @Override
+        public String toString() {
+            return new StringBuilder(96).append("QueueStats [ capacity = ").append(capacity).append(", depth = ").append(depth)
+                    .append(", highWaterMark = ").append(highWaterMark).append(", dropCount = ").append(dropCount).append(" ]").toString();
+        }
+    }
+
+    /**
+     * Class ResponseFuture is the pending result of a request sent by {@link EventBus#call}.
+     * No thread is parked while waiting for the response, the response is delivered to the
+     * {@link ResponseCallback} with the thread mode passed to {@link #setCallback}. The
+     * blocking {@link #get()} methods are provided for the background threads only, never
+     * call them on the main thread.
+     * <p>The request completes with the first non-null value returned by a subscriber. If all
+     * subscribers return <tt>null</tt>, the request completes with a <tt>null</tt> response, or
+     * with the first exception thrown by a subscriber.</p>
+     * @see EventBus#callWithTimeout(int, ThreadMode, long, Object[])
+     */
+    public static final class ResponseFuture implements Future<Object> {
+        private static final int PENDING   = 0;
+        private static final int SUCCEEDED = 1;
+        private static final int FAILED    = 2;
+        private static final int CANCELLED = 3;
+
+        private final int mToken;
+        private final EventBus mEventBus;
+
+        private int mState;
+        private int mRemaining;
+        private Object mResponse;
+        private Throwable mError;
+        private Throwable mFailure;
+        private Subscriber[] mRequests;
+        private TimerWheel.Timeout mTimeout;
+        private ThreadMode mCallbackMode;
+        private ResponseCallback mCallback;
+
+        /* package */ ResponseFuture(EventBus eventBus, int token) {
+            mToken = token;
+            mEventBus = eventBus;
+        }
+
+        /**
+         * Sets the callback to be invoked when this request completes. If this
+         * request has already completed, the callback is delivered immediately.
+         * @param mode The {@link ThreadMode} that the callback will be delivered.
+         * @param callback The {@link ResponseCallback}.
+         * @return This <tt>ResponseFuture</tt>.
+         */
+        public ResponseFuture setCallback(ThreadMode mode, ResponseCallback callback) {
+            if (callback == null) {
+                throw new NullPointerException("The callback == null");
+            }
+
+            synchronized (this) {
+                if (mCallback != null) {
+                    throw new IllegalStateException("The callback is already set");
+                }
+
+                mCallback = callback;
+                mCallbackMode = mode;
+                if (mState == PENDING) {
+                    return this;
+                }
+            }
+
+            deliverCallback();
+            return this;
+        }
+
+        /**
+         * Cancels this request. The pending request events are withdrawn, and the
+         * callback is invoked with a <tt>CancellationException</tt>.
+         * @param mayInterruptIfRunning Ignored, a running subscriber is never interrupted.
+         * @return <tt>true</tt> if this request was pending and has been cancelled,
+         * <tt>false</tt> otherwise.
+         */
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return complete(CANCELLED, null, new CancellationException("The request was cancelled"));
+        }
+
+        @Override
+        public synchronized boolean isCancelled() {
+            return (mState == CANCELLED);
+        }
+
+        @Override
+        public synchronized boolean isDone() {
+            return (mState != PENDING);
+        }
+
+        @Override
+        public synchronized Object get() throws InterruptedException, ExecutionException {
+            while (mState == PENDING) {
+                wait();
+            }
+
+            return getResponse();
+        }
+
+        @Override
+        public synchronized Object get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            final long deadline = System.nanoTime() + unit.toNanos(timeout);
+            while (mState == PENDING) {
+                final long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new TimeoutException();
+                }
+
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+
+            return getResponse();
+        }
+
+        @Override
+        public String toString() {
+            return new StringBuilder(64).append("ResponseFuture [ token = ").append(mToken).append(", state = ").append(mState).append(" ]").toString();
+        }
+
+        /* package */ void start(Subscriber[] requests, long timeoutMillis) {
+            synchronized (this) {
+                mRequests  = requests;
+                mRemaining = requests.length;
+            }
+
+            if (requests.length == 0) {
+                complete(SUCCEEDED, null, null);
+            } else if (timeoutMillis > 0) {
+                final TimerWheel.Timeout timeout = mEventBus.getTimer().schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        complete(FAILED, null, new TimeoutException("The request timed out - token = " + mToken));
+                    }
+                }, timeoutMillis);
+
+                synchronized (this) {
+                    if (mState == PENDING) {
+                        mTimeout = timeout;
+                        return;
+                    }
+                }
+
+                timeout.cancel();
+            }
+        }
+
+        /* package */ boolean isPending() {
+            synchronized (this) {
+                return (mState == PENDING);
+            }
+        }
+
+        /* package */ void onResponse(Object response, Throwable error) {
+            final Throwable failure;
+            synchronized (this) {
+                if (error != null && mFailure == null) {
+                    mFailure = error;
+                }
+
+                if (response == null && --mRemaining > 0) {
+                    return;
+                }
+
+                failure = mFailure;
+            }
+
+            if (response != null) {
+                complete(SUCCEEDED, response, null);
+            } else {
+                complete(failure != null ? FAILED : SUCCEEDED, null, failure);
+            }
+        }
+
+        /* package */ void invokeCallback() {
+            final ResponseCallback callback;
+            final Object response;
+            final Throwable error;
+            synchronized (this) {
+                callback = mCallback;
+                response = mResponse;
+                error = mError;
+            }
+
+            callback.onResponse(mToken, response, error);
+        }
+
+        private Object getResponse() throws ExecutionException {
+            switch (mState) {
+            case CANCELLED:
+                throw (CancellationException)mError;
+
+            case FAILED:
+                throw new ExecutionException(mError);
+
+            default:
+                return mResponse;
+            }
+        }
+
+        private boolean complete(int state, Object response, Throwable error) {
+            final TimerWheel.Timeout timeout;
+            final Subscriber[] requests;
+            final ResponseCallback callback;
+            synchronized (this) {
+                if (mState != PENDING) {
+                    return false;
+                }
+
+                mState = state;
+                mError = error;
+                mResponse = response;
+                timeout  = mTimeout;
+                requests = mRequests;
+                callback = mCallback;
+                mTimeout = null;
+                mRequests = null;
+                notifyAll();
+            }
+
+            if (timeout != null) {
+                timeout.cancel();
+            }
+
+            if (requests != null) {
+                // Withdraws the request events which are still pending.
+                for (int i = 0; i < requests.length; ++i) {
+                    mEventBus.cancelPendingEvents(requests[i]);
+                }
+            }
+
+            if (callback != null) {
+                deliverCallback();
+            }
+
+            return true;
+        }
+
+        private void deliverCallback() {
+            mEventBus.getEventHandler(mCallbackMode != null ? mCallbackMode : ThreadMode.POST).handleEvent(mToken, new CallbackSubscriber(this), null, 0, NO_KEY, 0);
+        }
+    }
+
     /**
      * The event handler state of idle.
      */
@@ -140,6 +540,37 @@ public final class EventBus {
      */
     private static final int RUNNING = 1;
 
+    /**
+     * The duration (in milliseconds) of a tick of the timer.
+     */
+    private static final long TIMER_TICK_MILLIS = 10;
+
+    /**
+     * The number of slots of the timer wheel.
+     */
+    private static final int TIMER_WHEEL_SIZE = 512;
+
+    /**
+     * The marker arguments of the events posted by {@link #postValue}, the
+     * payload of these events is carried by a primitive value.
+     */
+    private static final Object[] VALUE_ARGS = new Object[0];
+
+    /**
+     * The key passed to {@link EventHandler#handleEvent}, if the event has no key or priority.
+     */
+    private static final int NO_KEY = Integer.MIN_VALUE;
+
+    /**
+     * The default event method name.
+     */
+    private static final String DEFAULT_METHOD_NAME = "onEvent";
+
+    /**
+     * The default maximum number of tokens retained by {@link #postSticky}.
+     */
+    private static final int DEFAULT_STICKY_CAPACITY = 32;
+
     /**
      * The work thread's name suffix.
      */
@@ -150,6 +581,12 @@ public final class EventBus {
      */
     private static final AtomicInteger tokenSequence = new AtomicInteger(Integer.MIN_VALUE);
 
+    /**
+     * The logical clock which stamps the posted events and the cancellations of the
+     * subscribers, an event is cancelled if its subscriber was cancelled after it.
+     */
+    private static final AtomicLong cancelClock = new AtomicLong();
+
     /**
      * The {@link ThreadMode#POST} thread mode event handler.
      */
@@ -166,9 +603,59 @@ public final class EventBus {
     private static final EventHandler asyncHandler = new AsyncHandler();
 
     /**
-     * The map tokens to {@link Subscriber}s.
+     * The {@link EventMetrics}, <tt>null</tt> if the metrics are disabled.
+     */
+    private static volatile EventMetrics metrics;
+
+    /**
+     * The {@link FlightRecorder}, <tt>null</tt> if the traffic is not recorded.
+     */
+    private static volatile FlightRecorder flightRecorder;
+
+    /**
+     * The {@link SubscriberIndex} array, replaced by {@link #addIndex}.
+     */
+    private static volatile SubscriberIndex[] subscriberIndexes = new SubscriberIndex[0];
+
+    /**
+     * The immutable snapshot of the map tokens to {@link Subscriber} arrays. Posting
+     * threads read it without locking, register and unregister replace it with a new
+     * snapshot while holding the {@link #mLock}.
+     */
+    private volatile SubscriberMap mSubscribers = SubscriberMap.EMPTY;
+
+    /**
+     * The lock to serialize modifications of the {@link #mSubscribers}.
+     */
+    private final ReentrantLock mLock = new ReentrantLock();
+
+    /**
+     * The queue of the {@link Subscriber}s whose object was released by the GC.
+     * It is drained by register and unregister, never by the posting threads.
+     */
+    private final ReferenceQueue<Object> mReferenceQueue = new ReferenceQueue<Object>();
+
+    /**
+     * The number of the {@link Subscriber}s which were reclaimed
+     * after their object was released by the GC.
+     */
+    private final AtomicLong mReclaimedCount = new AtomicLong();
+
+    /**
+     * The sticky events, retains the latest arguments of each token posted by {@link #postSticky}.
+     * The least recently used token is evicted when the {@link StickyEvents#capacity} is exceeded.
+     */
+    private final StickyEvents mStickyEvents = new StickyEvents(DEFAULT_STICKY_CAPACITY);
+
+    /**
+     * The map of tokens to their {@link RateLimiter}.
+     */
+    private final ConcurrentHashMap<Integer, RateLimiter> mRateLimiters = new ConcurrentHashMap<Integer, RateLimiter>();
+
+    /**
+     * The timer to deliver the delayed and periodic events of all thread modes.
      */
-    private final SparseArray<Subscriber> mSubscribers = new SparseArray<Subscriber>();
+    private volatile TimerWheel mTimer;
 
     /**
      * The {@link EventHandler} array.
@@ -176,12 +663,11 @@ public final class EventBus {
     private final EventHandler[] mEventHandlers = new EventHandler[ThreadMode.values().length];
 
     /**
-     * The thread pool to execute asynchronous pending events. Calls to <em>execute</em>
-     * will reuse previously constructed threads if available. If no existing thread is
-     * available, a new thread will be created and added to the pool. Threads that have
-     * not been used for <em>60</em> seconds are terminated and removed from the cache.
+     * The executor to execute asynchronous pending events and the drain loops of the
+     * sequential thread modes. By default it is a {@link WorkerPool} bounded to the number
+     * of CPUs (at least <em>2</em>), it may be replaced by {@link #setExecutor(Executor)}.
      */
-    private static final Executor executor = Executors.newCachedThreadPool(new ThreadFactory() {
+    private static volatile Executor executor = new WorkerPool(Math.max(Runtime.getRuntime().availableProcessors(), 2), new ThreadFactory() {
         @Override
         public Thread newThread(Runnable runnable) {
             return new Thread(runnable, threadName());
@@ -193,6 +679,9 @@ public final class EventBus {
      * subscriber must call {@link #unregister(int)} once they are no longer interested
      * in receiving events. <p>Note that the event handle method prototype:
      * <em>modifier void <b>onEvent</b>(int token, Object[] args)</em></p>
+     * <p>If the <em>subscriber</em> implements {@link EventReceiver}, the events will be
+     * delivered to {@link EventReceiver#onReceiveEvent(int, Object[])} directly without
+     * reflection.</p>
      * @param subscriber The event subscriber to register.
      * @return A unique token use to {@link #post} and {@link #postDelayed}.
      * @see #register(Object, String)
@@ -203,7 +692,7 @@ public final class EventBus {
      */
     public int register(Object subscriber) {
         final int token = generateToken();
-        register(token, subscriber, "onEvent");
+        register(token, subscriber);
         return token;
     }
 
@@ -228,10 +717,16 @@ public final class EventBus {
 
     /**
      * Registers the event subscriber with the specified <tt>token</tt> and default
-     * event method name "onEvent". The token must <b>not</b> already be registered.
-     * The subscriber must call {@link #unregister(int)} once they are no longer
-     * interested in receiving events. <p>Note that the event handle method prototype:
+     * event method name "onEvent". A token may be registered by many subscribers, each
+     * event posted with the token will be delivered to all of them. The subscriber must
+     * call {@link #unregister(int, Object)} once they are no longer interested in
+     * receiving events. <p>Note that the event handle method prototype:
      * <em>modifier void <b>onEvent</b>(int token, Object[] args)</em></p>
+     * <p>If the <em>subscriber</em> class has a {@link Subscribe} method indexed by an
+     * index added by {@link #addIndex}, the events will be delivered to that method directly
+     * without reflection. Otherwise, if the <em>subscriber</em> implements {@link EventReceiver},
+     * the events will be delivered to {@link EventReceiver#onReceiveEvent(int, Object[])}
+     * directly without reflection.</p>
      * @param token The token to register. generates by {@link #generateToken()}.
      * @param subscriber The event subscriber to register.
      * @see #register(Object)
@@ -241,7 +736,22 @@ public final class EventBus {
      * @see #unregisterAll()
      */
     public void register(int token, Object subscriber) {
-        register(token, subscriber, "onEvent");
+        register(token, subscriber, Subscriber.newSubscriber(subscriber, DEFAULT_METHOD_NAME, token, null, mReferenceQueue), DEFAULT_METHOD_NAME);
+    }
+
+    /**
+     * Like as {@link #register(int, Object)}, but the events will be always delivered
+     * to the <em>subscriber</em> with the specified thread <em>mode</em>, regardless of
+     * the thread mode passed by {@link #post} or {@link #postDelayed} or {@link Subscribe#mode()}.
+     * @param token The token to register. generates by {@link #generateToken()}.
+     * @param subscriber The event subscriber to register.
+     * @param mode The {@link ThreadMode} that the events will be delivered.
+     * @see #register(int, Object)
+     * @see #register(int, Object, String, ThreadMode)
+     * @see #unregister(int, Object)
+     */
+    public void register(int token, Object subscriber, ThreadMode mode) {
+        register(token, subscriber, Subscriber.newSubscriber(subscriber, DEFAULT_METHOD_NAME, token, mode, mReferenceQueue), DEFAULT_METHOD_NAME);
     }
 
     /**
@@ -258,28 +768,69 @@ public final class EventBus {
      * @see #unregisterAll()
      */
     public void register(int token, Object subscriber, String methodName) {
-        synchronized (mSubscribers) {
-            if (mSubscribers.get(token, null) != null) {
-                throw new IllegalStateException(new StringBuilder("The token is already registered. [ token = ").append(token).append(", subscriber = ").append(subscriber).append(", method = ").append(methodName).append(" ]").toString());
-            }
+        register(token, subscriber, new MethodSubscriber(subscriber, methodName, token, null, mReferenceQueue), methodName);
+    }
 
-            mSubscribers.append(token, new Subscriber(subscriber, methodName));
-        }
+    /**
+     * Like as {@link #register(int, Object, String)}, but the events will be always
+     * delivered to the <em>subscriber</em> with the specified thread <em>mode</em>,
+     * regardless of the thread mode passed by {@link #post} or {@link #postDelayed}.
+     * @param token The token to register. generates by {@link #generateToken()}.
+     * @param subscriber The event subscriber to register.
+     * @param methodName The event method name to register.
+     * @param mode The {@link ThreadMode} that the events will be delivered.
+     * @see #register(int, Object, String)
+     * @see #register(int, Object, ThreadMode)
+     * @see #unregister(int, Object)
+     */
+    public void register(int token, Object subscriber, String methodName, ThreadMode mode) {
+        register(token, subscriber, new MethodSubscriber(subscriber, methodName, token, mode, mReferenceQueue), methodName);
     }
 
     /**
-     * Unregisters a previously registered event
-     * subscriber with the specified <tt>token</tt>.
+     * Unregisters all previously registered event
+     * subscribers with the specified <tt>token</tt>.
      * @param token The token to unregister.
      * @see #register(Object)
      * @see #register(Object, String)
      * @see #register(int, Object)
      * @see #register(int, Object, String)
+     * @see #unregister(int, Object)
      * @see #unregisterAll()
      */
     public void unregister(int token) {
-        synchronized (mSubscribers) {
-            mSubscribers.delete(token);
+        mLock.lock();
+        try {
+            reclaimReleasedSubscribers();
+            mSubscribers = mSubscribers.remove(token);
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    /**
+     * Unregisters a previously registered event subscriber with the specified
+     * <tt>token</tt>. The other subscribers of the <tt>token</tt> are not affected.
+     * @param token The token to unregister.
+     * @param subscriber The event subscriber to unregister.
+     * @see #register(int, Object)
+     * @see #register(int, Object, String)
+     * @see #unregister(int)
+     * @see #unregisterAll()
+     */
+    public void unregister(int token, Object subscriber) {
+        mLock.lock();
+        try {
+            reclaimReleasedSubscribers();
+            final Subscriber[] subscribers = mSubscribers.get(token);
+            if (subscribers != null) {
+                final int index = indexOf(subscribers, subscriber);
+                if (index != -1) {
+                    mSubscribers = mSubscribers.put(token, remove(subscribers, index));
+                }
+            }
+        } finally {
+            mLock.unlock();
         }
     }
 
@@ -292,21 +843,183 @@ public final class EventBus {
      * @see #unregister(int)
      */
     public void unregisterAll() {
-        synchronized (mSubscribers) {
-            mSubscribers.clear();
+        mLock.lock();
+        try {
+            mSubscribers = SubscriberMap.EMPTY;
+        } finally {
+            mLock.unlock();
         }
     }
 
     /**
-     * Posts an event to this <tt>EventBus</tt> with the specified thread mode.
-     * @param token A token to identify the event.
-     * @param mode The {@link ThreadMode} that the event will be posted.
-     * @param args The event method arguments. If the event method no arguments,
-     * you can pass <em>(Object[])null</em> instead of allocating an empty array.
-     * @see #postDelayed(int, ThreadMode, long, Object[])
+     * Like as {@link #register(int, Object, ThreadMode)}, but if the <em>token</em> has a sticky
+     * event posted by {@link #postSticky}, the sticky event will be delivered to the <em>subscriber</em>
+     * immediately with the specified thread <em>mode</em>. If a sticky event is posted concurrently,
+     * the <em>subscriber</em> may receive the latest arguments twice.
+     * @param token The token to register. generates by {@link #generateToken()}.
+     * @param subscriber The event subscriber to register.
+     * @param mode May be <tt>null</tt>. The {@link ThreadMode} that the events will be delivered.
+     * If <tt>null</tt>, the sticky event is delivered in the current thread, and the other events
+     * are delivered with the thread mode passed by {@link #post}.
+     * @see #postSticky(int, ThreadMode, Object[])
+     * @see #getStickyEvent(int)
+     */
+    public void registerSticky(int token, Object subscriber, ThreadMode mode) {
+        final Subscriber newSubscriber = Subscriber.newSubscriber(subscriber, DEFAULT_METHOD_NAME, token, mode, mReferenceQueue);
+        register(token, subscriber, newSubscriber, DEFAULT_METHOD_NAME);
+
+        final Object[] args = mStickyEvents.get(token);
+        if (args != null) {
+            getEventHandler(mode != null ? mode : ThreadMode.POST).handleEvent(token, newSubscriber, (args != StickyEvents.NO_ARGS ? args : null), 0, NO_KEY, 0);
+        }
+    }
+
+    /**
+     * Posts a sticky event to this <tt>EventBus</tt> with the specified thread mode. Like
+     * as {@link #post(int, ThreadMode, Object[])}, but the <tt>EventBus</tt> retains the
+     * <em>args</em> as the latest arguments of the <em>token</em>, the subscribers registered
+     * later by {@link #registerSticky} will receive them immediately. The memory is bounded
+     * by {@link #setStickyPolicy(int, long)}.
+     * @param token A token to identify the event.
+     * @param mode The {@link ThreadMode} that the event will be posted.
+     * @param args The event method arguments. If the event method no arguments,
+     * you can pass <em>(Object[])null</em> instead of allocating an empty array.
+     * @see #registerSticky(int, Object, ThreadMode)
+     * @see #removeStickyEvent(int)
+     */
+    public void postSticky(int token, ThreadMode mode, Object... args) {
+        mStickyEvents.put(token, args);
+        dispatchEvent(token, mode, NO_KEY, 0, args, 0);
+    }
+
+    /**
+     * Returns the latest arguments of the sticky event with the specified <em>token</em>.
+     * @param token The token, passed earlier by {@link #postSticky}.
+     * @return The event method arguments, or <tt>null</tt> if the <em>token</em> has no
+     * sticky event, or the sticky event has expired or was posted with no arguments.
+     * @see #postSticky(int, ThreadMode, Object[])
+     */
+    public Object[] getStickyEvent(int token) {
+        final Object[] args = mStickyEvents.get(token);
+        return (args != StickyEvents.NO_ARGS ? args : null);
+    }
+
+    /**
+     * Removes the sticky event with the specified <em>token</em>.
+     * @param token The token, passed earlier by {@link #postSticky}.
+     * @return <tt>true</tt> if the <em>token</em> had a sticky event, <tt>false</tt> otherwise.
+     * @see #removeAllStickyEvents()
+     */
+    public boolean removeStickyEvent(int token) {
+        return mStickyEvents.remove(token);
+    }
+
+    /**
+     * Removes all sticky events.
+     * @see #removeStickyEvent(int)
+     */
+    public void removeAllStickyEvents() {
+        mStickyEvents.clear();
+    }
+
+    /**
+     * Bounds the memory of the sticky events. By default at most 32 tokens are
+     * retained and the sticky events never expire.
+     * @param capacity The maximum number of tokens retained, the least recently
+     * used token is evicted when exceeded. Must be > 0.
+     * @param expiryMillis The time (in milliseconds) after which a sticky event
+     * is no longer delivered, or <tt>0</tt> if the sticky events never expire.
+     * @see #postSticky(int, ThreadMode, Object[])
+     */
+    public void setStickyPolicy(int capacity, long expiryMillis) {
+        if (capacity <= 0 || expiryMillis < 0) {
+            throw new IllegalArgumentException("The capacity must be > 0 and the expiryMillis must be >= 0");
+        }
+
+        mStickyEvents.setPolicy(capacity, expiryMillis);
+    }
+
+    /**
+     * Posts an event to this <tt>EventBus</tt> with the specified thread mode. The
+     * event will be delivered to all subscribers of the <em>token</em>, a subscriber
+     * registered with its own thread mode overrides the <em>mode</em>.
+     * @param token A token to identify the event.
+     * @param mode The {@link ThreadMode} that the event will be posted.
+     * @param args The event method arguments. If the event method no arguments,
+     * you can pass <em>(Object[])null</em> instead of allocating an empty array.
+     * @see #postDelayed(int, ThreadMode, long, Object[])
      */
     public void post(int token, ThreadMode mode, Object... args) {
-        postDelayed(token, mode, 0, args);
+        if (!mRateLimiters.isEmpty()) {
+            final RateLimiter limiter = mRateLimiters.get(token);
+            if (limiter != null && limiter.offer(mode, args)) {
+                return;
+            }
+        }
+
+        dispatchEvent(token, mode, NO_KEY, 0, args, 0);
+    }
+
+    /**
+     * Posts an event to this <tt>EventBus</tt> with the specified thread mode and rate policy.
+     * The events posted by this method and {@link #post} with the same <em>token</em> share the
+     * rate policy, until no event is pending. If the <em>token</em> has a rate policy set by
+     * {@link #setRatePolicy}, that rate policy applies instead of the <em>policy</em>.
+     * @param token A token to identify the event.
+     * @param mode The {@link ThreadMode} that the event will be posted.
+     * @param policy The {@link RatePolicy}.
+     * @param intervalMillis The interval (in milliseconds) of the <em>policy</em>, must be > 0.
+     * @param args The event method arguments. If the event method no arguments, you can pass
+     * <em>(Object[])null</em> instead of allocating an empty array.
+     * @see #setRatePolicy(int, RatePolicy, long)
+     */
+    public void postWithPolicy(int token, ThreadMode mode, RatePolicy policy, long intervalMillis, Object... args) {
+        checkRatePolicy(policy, intervalMillis);
+        while (true) {
+            RateLimiter limiter = mRateLimiters.get(token);
+            if (limiter == null) {
+                final RateLimiter newLimiter = new RateLimiter(token, policy, intervalMillis, true);
+                if ((limiter = mRateLimiters.putIfAbsent(token, newLimiter)) == null) {
+                    limiter = newLimiter;
+                }
+            }
+
+            // A detached limiter rejects the event, retry with a new limiter.
+            if (limiter.offer(mode, args)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Sets the rate policy of the specified <em>token</em>. The events posted by {@link #post}
+     * with the <em>token</em> will be delivered with the <em>policy</em>, until the rate policy
+     * is cleared by {@link #clearRatePolicy(int)}.
+     * @param token The token to set.
+     * @param policy The {@link RatePolicy}.
+     * @param intervalMillis The interval (in milliseconds) of the <em>policy</em>, must be > 0.
+     * @see #clearRatePolicy(int)
+     * @see #postWithPolicy(int, ThreadMode, RatePolicy, long, Object[])
+     */
+    public void setRatePolicy(int token, RatePolicy policy, long intervalMillis) {
+        checkRatePolicy(policy, intervalMillis);
+        final RateLimiter limiter = mRateLimiters.put(token, new RateLimiter(token, policy, intervalMillis, false));
+        if (limiter != null) {
+            limiter.detach();
+        }
+    }
+
+    /**
+     * Clears the rate policy of the specified <em>token</em>.
+     * The pending event of the <em>token</em> is discarded.
+     * @param token The token to clear.
+     * @see #setRatePolicy(int, RatePolicy, long)
+     */
+    public void clearRatePolicy(int token) {
+        final RateLimiter limiter = mRateLimiters.remove(token);
+        if (limiter != null) {
+            limiter.detach();
+        }
     }
 
     /**
@@ -314,29 +1027,288 @@ public final class EventBus {
      * @param token A token to identify the event.
      * @param mode The {@link ThreadMode} that the event will be posted.
      * @param delayMillis The delay (in milliseconds) until the event method will be invoked.
-     * This parameter can only be used {@link ThreadMode#MAIN} and {@link ThreadMode#HANDLER}
-     * thread mode.
+     * The {@link ThreadMode#MAIN} and {@link ThreadMode#HANDLER} thread mode delay the event
+     * by their message queue, the other thread modes delay the event by the timer of this
+     * <tt>EventBus</tt>, and deliver it to the subscribers registered when it expires. Note
+     * that the delayed {@link ThreadMode#POST} events will be called in the timer thread.
      * @param args The event method arguments. If the event method no arguments, you can pass
      * <em>(Object[])null</em> instead of allocating an empty array.
      * @see #post(int, ThreadMode, Object[])
+     * @see #postAtFixedRate(int, ThreadMode, long, long, Object[])
+     * @see #postWithFixedDelay(int, ThreadMode, long, long, Object[])
+     * @see #cancelScheduled(int)
      */
     public void postDelayed(int token, ThreadMode mode, long delayMillis, Object... args) {
-        final Subscriber subscriber = getSubscriber(token);
-        if (subscriber != null) {
-            // Dispatch the event.
-            final int index = mode.ordinal();
-            EventHandler handler = mEventHandlers[index];
-            if (handler == null) {
-                synchronized (mEventHandlers) {
-                    // Check again, this time in synchronized.
-                    if ((handler = mEventHandlers[index]) == null) {
-                        mEventHandlers[index] = handler = mode.newEventHandler();
-                    }
-                }
+        dispatchEvent(token, mode, NO_KEY, delayMillis, args, 0);
+    }
+
+    /**
+     * Posts an event to this <tt>EventBus</tt> repeatedly at a fixed rate, the period
+     * is measured from the scheduled time of the previous post.
+     * @param token A token to identify the event.
+     * @param mode The {@link ThreadMode} that the event will be posted.
+     * @param delayMillis The delay (in milliseconds) until the first post.
+     * @param periodMillis The period (in milliseconds) between successive posts, must be > 0.
+     * @param args The event method arguments. If the event method no arguments, you can pass
+     * <em>(Object[])null</em> instead of allocating an empty array.
+     * @return The {@link TimerWheel.Timeout} to cancel the posts.
+     * @see #postWithFixedDelay(int, ThreadMode, long, long, Object[])
+     * @see #cancelScheduled(int)
+     */
+    public TimerWheel.Timeout postAtFixedRate(int token, ThreadMode mode, long delayMillis, long periodMillis, Object... args) {
+        return schedule(token, mode, delayMillis, periodMillis, true, args);
+    }
+
+    /**
+     * Posts an event to this <tt>EventBus</tt> repeatedly with a fixed delay, the period
+     * is measured from the completion of the previous post.
+     * @param token A token to identify the event.
+     * @param mode The {@link ThreadMode} that the event will be posted.
+     * @param delayMillis The delay (in milliseconds) until the first post.
+     * @param periodMillis The period (in milliseconds) between successive posts, must be > 0.
+     * @param args The event method arguments. If the event method no arguments, you can pass
+     * <em>(Object[])null</em> instead of allocating an empty array.
+     * @return The {@link TimerWheel.Timeout} to cancel the posts.
+     * @see #postAtFixedRate(int, ThreadMode, long, long, Object[])
+     * @see #cancelScheduled(int)
+     */
+    public TimerWheel.Timeout postWithFixedDelay(int token, ThreadMode mode, long delayMillis, long periodMillis, Object... args) {
+        return schedule(token, mode, delayMillis, periodMillis, false, args);
+    }
+
+    /**
+     * Removes all pending events with the specified <em>token</em> from every thread
+     * mode, including the delayed and periodic events. The removed events will not be
+     * delivered. The queued events are removed at once, the cost is proportional to the number
+     * of subscribers of the <em>token</em> and the number of the pending events.
+     * @param token The token to remove.
+     * @see #removeEvents(int, Object)
+     */
+    public void removeEvents(int token) {
+        cancelScheduled(token);
+        final Subscriber[] subscribers = mSubscribers.get(token);
+        if (subscribers != null) {
+            for (int i = 0; i < subscribers.length; ++i) {
+                cancelPendingEvents(subscribers[i]);
+            }
+        }
+    }
+
+    /**
+     * Removes all pending events with the specified <em>token</em> of the specified
+     * <em>subscriber</em> from every thread mode, including the delayed and periodic
+     * events which were scheduled before this call. The removed events will not be
+     * delivered to the <em>subscriber</em>, the other subscribers are not affected.
+     * @param token The token to remove.
+     * @param subscriber The event subscriber, passed earlier by {@link #register}.
+     * @see #removeEvents(int)
+     */
+    public void removeEvents(int token, Object subscriber) {
+        final Subscriber[] subscribers = mSubscribers.get(token);
+        if (subscribers != null) {
+            final int index = indexOf(subscribers, subscriber);
+            if (index != -1) {
+                cancelPendingEvents(subscribers[index]);
+            }
+        }
+    }
+
+    /**
+     * Cancels all delayed and periodic events with the specified <em>token</em>,
+     * which were scheduled by the timer of this <tt>EventBus</tt>.
+     * @param token The token to cancel.
+     * @return The number of the cancelled events.
+     * @see #postDelayed(int, ThreadMode, long, Object[])
+     * @see #postAtFixedRate(int, ThreadMode, long, long, Object[])
+     * @see #postWithFixedDelay(int, ThreadMode, long, long, Object[])
+     */
+    public int cancelScheduled(int token) {
+        final TimerWheel timer = mTimer;
+        return (timer != null ? timer.cancel(token) : 0);
+    }
+
+    /**
+     * Posts an event to this <tt>EventBus</tt> with the {@link ThreadMode#KEYED} thread
+     * mode. The events with the same <em>key</em> will be delivered sequentially in the
+     * order they were posted, the events with different keys may be delivered in parallel.
+     * @param token A token to identify the event.
+     * @param key The key to order the event, such as the match id or team id.
+     * @param args The event method arguments. If the event method no arguments, you can pass
+     * <em>(Object[])null</em> instead of allocating an empty array.
+     * @see #post(int, ThreadMode, Object[])
+     */
+    public void postKeyed(int token, int key, Object... args) {
+        dispatchEvent(token, ThreadMode.KEYED, key, 0, args, 0);
+    }
+
+    /**
+     * Posts an event to this <tt>EventBus</tt> with the {@link ThreadMode#PRIORITY} thread
+     * mode and the specified <em>priority</em>. The pending events with the higher priority
+     * will be delivered first, the events with the same priority will be delivered in the
+     * order they were posted.
+     * @param token A token to identify the event.
+     * @param priority The priority of the event, such as <tt>10</tt> for a user-visible
+     * event and <tt>-10</tt> for a bulk background event. The default priority is <tt>0</tt>.
+     * @param args The event method arguments. If the event method no arguments, you can pass
+     * <em>(Object[])null</em> instead of allocating an empty array.
+     * @see #post(int, ThreadMode, Object[])
+     */
+    public void postPriority(int token, int priority, Object... args) {
+        dispatchEvent(token, ThreadMode.PRIORITY, (priority != NO_KEY ? priority : priority + 1), 0, args, 0);
+    }
+
+    /**
+     * Posts an event carrying a primitive <em>value</em> to this <tt>EventBus</tt> with
+     * the specified thread mode. Unlike {@link #post(int, ThreadMode, Object[])}, this
+     * method does not allocate an arguments array or box the value. The subscribers
+     * implementing {@link ValueEventReceiver} receive the value by
+     * {@link ValueEventReceiver#onReceiveEvent(int, long)}, the other subscribers
+     * receive a boxed <tt>Long</tt> as the only element of the event method arguments.
+     * The arguments array of a queued value event is reused once the event method
+     * returns, so the subscribers must not keep it.
+     * @param token A token to identify the event.
+     * @param mode The {@link ThreadMode} that the event will be posted.
+     * @param value The event value, such as a score or an id.
+     * @see #post(int, ThreadMode, Object[])
+     */
+    public void postValue(int token, ThreadMode mode, long value) {
+        dispatchEvent(token, mode, NO_KEY, 0, VALUE_ARGS, value);
+    }
+
+    /**
+     * Sends a request to the subscribers of the specified <em>token</em>, and returns a
+     * {@link ResponseFuture} completed by the value returned by a subscriber. The event
+     * method of the subscribers may return a value, the subscribers implementing
+     * {@link RequestReceiver} return the value by {@link RequestReceiver#onReceiveRequest}.
+     * If the <em>token</em> has no subscriber, the request completes with a <tt>null</tt>
+     * response immediately.
+     * @param token A token to identify the request.
+     * @param mode The {@link ThreadMode} that the request will be delivered.
+     * @param timeoutMillis The timeout (in milliseconds) of the request, or <tt>0</tt>
+     * if the request never times out.
+     * @param args The request arguments. If the event method no arguments, you can pass
+     * <em>(Object[])null</em> instead of allocating an empty array.
+     * @return The {@link ResponseFuture} of the request.
+     * @see ResponseFuture#setCallback(ThreadMode, ResponseCallback)
+     * @see ResponseFuture#cancel(boolean)
+     */
+    public ResponseFuture callWithTimeout(int token, ThreadMode mode, long timeoutMillis, Object... args) {
+        final ResponseFuture future = new ResponseFuture(this, token);
+        final Subscriber[] subscribers = mSubscribers.get(token);
+
+        // Binds the future to each live subscriber.
+        int count = 0;
+        Subscriber[] requests = new Subscriber[subscribers != null ? subscribers.length : 0];
+        for (int i = 0; i < requests.length; ++i) {
+            final Subscriber subscriber = subscribers[i];
+            final Object object = subscriber.get();
+            if (object != null) {
+                requests[count++] = new RequestSubscriber(object, subscriber, future);
             }
+        }
+
+        if (count < requests.length) {
+            requests = Arrays.copyOf(requests, count);
+        }
+
+        final FlightRecorder recorder = flightRecorder;
+        if (recorder != null) {
+            recorder.record(FlightRecorder.Type.POST, token, mode, System.nanoTime(), 0, 0);
+        }
+
+        future.start(requests, timeoutMillis);
+        for (int i = 0; i < count; ++i) {
+            final Subscriber request = requests[i];
+            getEventHandler(request.mode != null ? request.mode : mode).handleEvent(token, request, args, 0, NO_KEY, 0);
+        }
+
+        return future;
+    }
+
+    /**
+     * Equivalent to calling {@link #callWithTimeout(int, ThreadMode, long, Object[])}
+     * with the timeout <tt>0</tt>, the request never times out.
+     * @param token A token to identify the request.
+     * @param mode The {@link ThreadMode} that the request will be delivered.
+     * @param args The request arguments.
+     * @return The {@link ResponseFuture} of the request.
+     * @see #callWithTimeout(int, ThreadMode, long, Object[])
+     */
+    public ResponseFuture call(int token, ThreadMode mode, Object... args) {
+        return callWithTimeout(token, mode, 0, args);
+    }
 
-            handler.handleEvent(token, subscriber, args, delayMillis);
+    /**
+     * Bounds the pending queue of the specified thread <em>mode</em>. When the queue is
+     * full, the posted events will be handled by the <em>policy</em>. By default the queue
+     * is unbounded.
+     * @param mode The {@link ThreadMode}, must be {@link ThreadMode#SEQUENCE} or
+     * {@link ThreadMode#BACKGROUND}.
+     * @param capacity The maximum number of pending events, must be > 0.
+     * @param policy The {@link OverflowPolicy} to handle the events posted to a full queue.
+     * @see #getQueueStats(ThreadMode)
+     */
+    public void setQueueCapacity(ThreadMode mode, int capacity, OverflowPolicy policy) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The queue capacity must be > 0");
         }
+
+        getSequenceHandler(mode).setCapacity(capacity, policy);
+    }
+
+    /**
+     * Returns the statistics of the pending queue of the specified thread <em>mode</em>.
+     * @param mode The {@link ThreadMode}, must be {@link ThreadMode#SEQUENCE} or
+     * {@link ThreadMode#BACKGROUND}.
+     * @return The {@link QueueStats}.
+     * @see #setQueueCapacity(ThreadMode, int, OverflowPolicy)
+     */
+    public QueueStats getQueueStats(ThreadMode mode) {
+        return getSequenceHandler(mode).getStats();
+    }
+
+    /**
+     * Returns the number of registered subscribers whose object is still alive.
+     * This method scans the registry, it is intended for diagnostics only.
+     * @return The number of live subscribers.
+     * @see #getReleasedSubscriberCount()
+     */
+    public int getLiveSubscriberCount() {
+        return countSubscribers(true);
+    }
+
+    /**
+     * Returns the number of registered subscribers whose object was released by the
+     * GC, but they are not yet reclaimed. The released subscribers are reclaimed by
+     * the next {@link #register} or {@link #unregister}. This method scans the registry,
+     * it is intended for diagnostics only.
+     * @return The number of released subscribers.
+     * @see #getLiveSubscriberCount()
+     * @see #getReclaimedSubscriberCount()
+     */
+    public int getReleasedSubscriberCount() {
+        return countSubscribers(false);
+    }
+
+    /**
+     * Returns the number of subscribers which were reclaimed after their
+     * object was released by the GC, since this <tt>EventBus</tt> was created.
+     * @return The number of reclaimed subscribers.
+     * @see #getReleasedSubscriberCount()
+     */
+    public long getReclaimedSubscriberCount() {
+        return mReclaimedCount.get();
+    }
+
+    /**
+     * Returns the number of {@link ThreadMode#SINGLE} events which were conflated
+     * into a pending event, instead of being queued, since this <tt>EventBus</tt>
+     * was created.
+     * @return The number of conflated events.
+     */
+    public long getConflatedCount() {
+        final EventHandler handler = mEventHandlers[ThreadMode.SINGLE.ordinal()];
+        return (handler != null ? ((SingleHandler)handler).getConflatedCount() : 0);
     }
 
     /**
@@ -348,6 +1320,68 @@ public final class EventBus {
         return tokenSequence.incrementAndGet();
     }
 
+    /**
+     * Adds the {@link SubscriberIndex} generated from the {@link Subscribe} methods at
+     * build time. The subscribers registered by {@link #register(int, Object)} or
+     * {@link #register(int, Object, ThreadMode)} are looked up in the indexes first,
+     * the string event method name APIs always use reflection.
+     * @param index The <tt>SubscriberIndex</tt> to add.
+     * @see Subscribe
+     */
+    public static void addIndex(SubscriberIndex index) {
+        if (index == null) {
+            throw new NullPointerException("The index == null");
+        }
+
+        synchronized (EventBus.class) {
+            final SubscriberIndex[] indexes = Arrays.copyOf(subscriberIndexes, subscriberIndexes.length + 1);
+            indexes[indexes.length - 1] = index;
+            subscriberIndexes = indexes;
+        }
+    }
+
+    /**
+     * Enables or disables the {@link EventMetrics} of all <tt>EventBus</tt> instances.
+     * Enabling the metrics starts a new <tt>EventMetrics</tt>. When the metrics are
+     * disabled (by default), the cost of each event is a single volatile read.
+     * @param enabled Whether to enable the metrics.
+     * @see #getMetrics()
+     */
+    public static void setMetricsEnabled(boolean enabled) {
+        metrics = (enabled ? new EventMetrics() : null);
+    }
+
+    /**
+     * Returns the {@link EventMetrics} of all <tt>EventBus</tt> instances.
+     * @return The <tt>EventMetrics</tt>, or <tt>null</tt> if the metrics are disabled.
+     * @see #setMetricsEnabled(boolean)
+     */
+    public static EventMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the {@link FlightRecorder} to record the traffic of all <tt>EventBus</tt>
+     * instances. When no recorder is set (by default), the cost of each event is a
+     * single volatile read. Installing a recorder doesn't change the delivery or the
+     * cancellation of the events, the cancelled events are purged the same way, and
+     * the recorder records each of them as a {@link FlightRecorder.Type#CANCEL}.
+     * @param recorder The <tt>FlightRecorder</tt>, or <tt>null</tt> to stop recording.
+     * @see #getFlightRecorder()
+     */
+    public static void setFlightRecorder(FlightRecorder recorder) {
+        flightRecorder = recorder;
+    }
+
+    /**
+     * Returns the {@link FlightRecorder} of all <tt>EventBus</tt> instances.
+     * @return The <tt>FlightRecorder</tt>, or <tt>null</tt> if the traffic is not recorded.
+     * @see #setFlightRecorder(FlightRecorder)
+     */
+    public static FlightRecorder getFlightRecorder() {
+        return flightRecorder;
+    }
+
     /**
      * Returns the {@link Handler} associated
      * with the UI thread's message queue.
@@ -360,11 +1394,29 @@ public final class EventBus {
     /**
      * Returns the {@link Executor} associated with <tt>EventBus</tt>.
      * @return The <tt>Executor</tt>.
+     * @see #setExecutor(Executor)
      */
     public static Executor getExecutor() {
         return executor;
     }
 
+    /**
+     * Replaces the {@link Executor} of all <tt>EventBus</tt> instances, which executes the
+     * {@link ThreadMode#ASYNC} events and the drain loops of the {@link ThreadMode#SEQUENCE},
+     * {@link ThreadMode#SINGLE}, {@link ThreadMode#BACKGROUND} and {@link ThreadMode#KEYED}
+     * thread modes. It should be called at startup, such as by the tests or benchmarks. The
+     * tasks already submitted to the previous executor still run on it.
+     * @param newExecutor The new <tt>Executor</tt>.
+     * @see #getExecutor()
+     */
+    public static void setExecutor(Executor newExecutor) {
+        if (newExecutor == null) {
+            throw new NullPointerException("The executor == null");
+        }
+
+        executor = newExecutor;
+    }
+
     /**
      * Runs the supplied <em>runnable</em> on the main thread. The
      * method will block only if the current thread is the main thread.
@@ -409,254 +1461,1825 @@ public final class EventBus {
         }
     }
 
-    private Subscriber getSubscriber(int token) {
-        synchronized (mSubscribers) {
-            final Subscriber subscriber = mSubscribers.get(token, null);
-            if (subscriber != null && subscriber.objectRef.get() == null) {
-                // Null value means that the subscriber.objectRef
-                // was released by the GC and we need to delete it.
-                Log.w(EventBus.class.getName(), "The subscriber was released by the GC.");
-                mSubscribers.delete(token);
-                return null;
+    private void dispatchEvent(int token, ThreadMode mode, int key, long delayMillis, Object[] args, long value) {
+        dispatchEvent(token, mode, key, delayMillis, args, value, Long.MAX_VALUE);
+    }
+
+    /**
+     * Dispatches the event to the subscribers of the <em>token</em>.
+     * @param stamp The value of the {@link #cancelClock} when the event was posted, the
+     * subscribers whose pending events were cancelled after it are skipped. Pass
+     * <tt>Long.MAX_VALUE</tt> if the event is posted right now.
+     */
+    private void dispatchEvent(int token, ThreadMode mode, int key, long delayMillis, Object[] args, long value, long stamp) {
+        if (delayMillis > 0 && mode != ThreadMode.MAIN && mode != ThreadMode.HANDLER) {
+            // The MAIN and HANDLER thread mode delay the event by their
+            // message queue, the others delay the event by the timer.
+            getTimer().schedule(token, new ScheduledEvent(token, mode, key, args, value), delayMillis, 0, false);
+            return;
+        }
+
+        final FlightRecorder recorder = flightRecorder;
+        if (recorder != null) {
+            recorder.record(FlightRecorder.Type.POST, token, mode, System.nanoTime(), 0, 0);
+        }
+
+        final Subscriber[] subscribers = mSubscribers.get(token);
+        if (subscribers != null) {
+            // Dispatch the event to each subscriber.
+            boolean released = false;
+            for (int i = 0; i < subscribers.length; ++i) {
+                final Subscriber subscriber = subscribers[i];
+                if (subscriber.get() == null) {
+                    released = true;
+                } else if (stamp == Long.MAX_VALUE || subscriber.cancelStamp <= stamp) {
+                    // The key is only meaningful to the thread mode it was posted with.
+                    final ThreadMode subscriberMode = (subscriber.mode != null ? subscriber.mode : mode);
+                    getEventHandler(subscriberMode).handleEvent(token, subscriber, args, value, (subscriberMode == mode ? key : NO_KEY), delayMillis);
+                }
+            }
+
+            if (released) {
+                removeReleasedSubscribers(token);
+            }
+        }
+    }
+
+    private TimerWheel.Timeout schedule(int token, ThreadMode mode, long delayMillis, long periodMillis, boolean fixedRate, Object[] args) {
+        if (periodMillis <= 0) {
+            throw new IllegalArgumentException("The periodMillis must be > 0");
+        }
+
+        return getTimer().schedule(token, new ScheduledEvent(token, mode, NO_KEY, args, 0), delayMillis, periodMillis, fixedRate);
+    }
+
+    /**
+     * Cancels all pending events of the <em>subscriber</em>. The cancelled events will not
+     * be delivered, the events queued by the handlers are removed and recycled at once.
+     * The events which were already handed to the executor, or which are being queued
+     * concurrently, are skipped when they run.
+     */
+    private void cancelPendingEvents(Subscriber subscriber) {
+        subscriber.cancel();
+        for (int i = 0; i < mEventHandlers.length; ++i) {
+            final EventHandler handler = mEventHandlers[i];
+            if (handler != null) {
+                handler.removeEvents(subscriber);
+            }
+        }
+    }
+
+    /**
+     * Adds the <em>event</em> to the binary min-heap of the pending events ordered by
+     * their {@link PendingEvent#rank} and {@link PendingEvent#sequence}.
+     * @param heap The heap.
+     * @param count The number of events in the <em>heap</em>.
+     * @param event The {@link PendingEvent} to add.
+     * @return The <em>heap</em>, or a larger copy of it if it was full.
+     */
+    private static PendingEvent[] offerHeap(PendingEvent[] heap, int count, PendingEvent event) {
+        if (count == heap.length) {
+            heap = Arrays.copyOf(heap, count << 1);
+        }
+
+        // Sifts up the event from the bottom of the heap.
+        int index = count;
+        while (index > 0) {
+            final int parent = (index - 1) >>> 1;
+            if (!precedes(event, heap[parent])) {
+                break;
+            }
+
+            heap[index] = heap[parent];
+            index = parent;
+        }
+
+        heap[index] = event;
+        return heap;
+    }
+
+    /**
+     * Removes the head of the binary min-heap of the pending events.
+     * @param heap The heap.
+     * @param count The number of events in the <em>heap</em> after the removal.
+     * @return The head of the <em>heap</em>.
+     */
+    private static PendingEvent pollHeap(PendingEvent[] heap, int count) {
+        final PendingEvent result = heap[0];
+        final PendingEvent last = heap[count];
+        heap[count] = null;
+        if (count > 0) {
+            siftDown(heap, count, 0, last);
+        }
+
+        return result;
+    }
+
+    /**
+     * Removes the events of the <em>subscriber</em> from the binary min-heap
+     * of the pending events, and restores the heap order.
+     * @param heap The heap.
+     * @param count The number of events in the <em>heap</em>.
+     * @param subscriber The {@link Subscriber} whose events will be removed.
+     * @return The removed events linked by {@link PendingEvent#next},
+     * or <tt>null</tt> if there is no such event.
+     */
+    private static PendingEvent removeHeap(PendingEvent[] heap, int count, Subscriber subscriber) {
+        PendingEvent removed = null;
+        int size = 0;
+        for (int i = 0; i < count; ++i) {
+            final PendingEvent event = heap[i];
+            if (event.subscriber == subscriber) {
+                event.next = removed;
+                removed = event;
+            } else {
+                heap[size++] = event;
+            }
+        }
+
+        if (removed != null) {
+            Arrays.fill(heap, size, count, null);
+            for (int i = (size >>> 1) - 1; i >= 0; --i) {
+                siftDown(heap, size, i, heap[i]);
+            }
+        }
+
+        return removed;
+    }
+
+    private static void siftDown(PendingEvent[] heap, int count, int index, PendingEvent event) {
+        while (true) {
+            int child = (index << 1) + 1;
+            if (child >= count) {
+                break;
+            }
+
+            if (child + 1 < count && precedes(heap[child + 1], heap[child])) {
+                ++child;
+            }
+
+            if (!precedes(heap[child], event)) {
+                break;
+            }
+
+            heap[index] = heap[child];
+            index = child;
+        }
+
+        heap[index] = event;
+    }
+
+    private static boolean precedes(PendingEvent one, PendingEvent another) {
+        return (one.rank != another.rank ? one.rank - another.rank < 0 : one.sequence < another.sequence);
+    }
+
+    private static void checkRatePolicy(RatePolicy policy, long intervalMillis) {
+        if (policy == null) {
+            throw new NullPointerException("The policy == null");
+        }
+
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("The intervalMillis must be > 0");
+        }
+    }
+
+    private TimerWheel getTimer() {
+        TimerWheel timer = mTimer;
+        if (timer == null) {
+            synchronized (mEventHandlers) {
+                // Check again, this time in synchronized.
+                if ((timer = mTimer) == null) {
+                    mTimer = timer = new TimerWheel(TIMER_TICK_MILLIS, TIMER_WHEEL_SIZE);
+                }
+            }
+        }
+
+        return timer;
+    }
+
+    private void register(int token, Object object, Subscriber subscriber, String methodName) {
+        mLock.lock();
+        try {
+            reclaimReleasedSubscribers();
+            final Subscriber[] subscribers = mSubscribers.get(token);
+            if (subscribers == null) {
+                mSubscribers = mSubscribers.put(token, new Subscriber[] { subscriber });
+            } else if (indexOf(subscribers, object) != -1) {
+                throw new IllegalStateException(new StringBuilder("The subscriber is already registered. [ token = ").append(token).append(", subscriber = ").append(object).append(", method = ").append(methodName).append(" ]").toString());
+            } else {
+                final Subscriber[] newSubscribers = new Subscriber[subscribers.length + 1];
+                System.arraycopy(subscribers, 0, newSubscribers, 0, subscribers.length);
+                newSubscribers[subscribers.length] = subscriber;
+                mSubscribers = mSubscribers.put(token, newSubscribers);
+            }
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    /**
+     * Removes the {@link Subscriber}s enqueued by the GC from the {@link #mSubscribers}.
+     * The caller must hold the {@link #mLock}.
+     */
+    private void reclaimReleasedSubscribers() {
+        Reference<?> reference;
+        SubscriberMap subscriberMap = mSubscribers;
+        while ((reference = mReferenceQueue.poll()) != null) {
+            final Subscriber subscriber = (Subscriber)reference;
+            final Subscriber[] subscribers = subscriberMap.get(subscriber.token);
+            if (subscribers != null) {
+                for (int i = 0; i < subscribers.length; ++i) {
+                    if (subscribers[i] == subscriber) {
+                        subscriberMap = subscriberMap.put(subscriber.token, remove(subscribers, i));
+                        mReclaimedCount.incrementAndGet();
+                        break;
+                    }
+                }
+            }
+        }
+
+        mSubscribers = subscriberMap;
+    }
+
+    private void removeReleasedSubscribers(int token) {
+        // Never blocks the posting thread, if the lock is held by
+        // another thread, the next post will try again.
+        if (mLock.tryLock()) {
+            try {
+                final Subscriber[] subscribers = mSubscribers.get(token);
+                if (subscribers != null) {
+                    Subscriber[] result = subscribers;
+                    for (int i = subscribers.length - 1; i >= 0; --i) {
+                        if (subscribers[i].get() == null) {
+                            // Null value means that the subscriber was
+                            // released by the GC and we need to delete it.
+                            Log.w(EventBus.class.getName(), "The subscriber was released by the GC.");
+                            result = remove(result, i);
+                            mReclaimedCount.incrementAndGet();
+                        }
+                    }
+
+                    if (result != subscribers) {
+                        mSubscribers = mSubscribers.put(token, result);
+                    }
+                }
+            } finally {
+                mLock.unlock();
+            }
+        }
+    }
+
+    private int countSubscribers(boolean live) {
+        int count = 0;
+        final SubscriberMap subscriberMap = mSubscribers;
+        for (int i = 0; i < subscriberMap.values.length; ++i) {
+            final Subscriber[] subscribers = subscriberMap.values[i];
+            for (int j = 0; j < subscribers.length; ++j) {
+                if ((subscribers[j].get() != null) == live) {
+                    ++count;
+                }
+            }
+        }
+
+        return count;
+    }
+
+    private SequenceHandler getSequenceHandler(ThreadMode mode) {
+        if (mode != ThreadMode.SEQUENCE && mode != ThreadMode.BACKGROUND) {
+            throw new IllegalArgumentException("Only SEQUENCE and BACKGROUND thread mode have a bounded queue - " + mode);
+        }
+
+        return (SequenceHandler)getEventHandler(mode);
+    }
+
+    private EventHandler getEventHandler(ThreadMode mode) {
+        final int index = mode.ordinal();
+        EventHandler handler = mEventHandlers[index];
+        if (handler == null) {
+            synchronized (mEventHandlers) {
+                // Check again, this time in synchronized.
+                if ((handler = mEventHandlers[index]) == null) {
+                    mEventHandlers[index] = handler = mode.newEventHandler();
+                }
+            }
+        }
+
+        return handler;
+    }
+
+    private static int indexOf(Subscriber[] subscribers, Object object) {
+        for (int i = 0; i < subscribers.length; ++i) {
+            if (subscribers[i].get() == object) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns a copy of the <em>subscribers</em> without the element at the
+     * specified <em>index</em>, or <tt>null</tt> if the copy would be empty.
+     */
+    private static Subscriber[] remove(Subscriber[] subscribers, int index) {
+        final int length = subscribers.length - 1;
+        if (length == 0) {
+            return null;
+        }
+
+        final Subscriber[] result = new Subscriber[length];
+        System.arraycopy(subscribers, 0, result, 0, index);
+        System.arraycopy(subscribers, index + 1, result, index, length - index);
+        return result;
+    }
+
+    /**
+     * Invokes the event method in the current thread, records its execution time if
+     * the metrics are enabled or the traffic is recorded.
+     */
+    private static void invokeEvent(ThreadMode mode, int token, Subscriber subscriber, Object[] args, long value) {
+        final EventMetrics eventMetrics = metrics;
+        final FlightRecorder recorder = flightRecorder;
+        if (eventMetrics == null && recorder == null) {
+            subscriber.invoke(token, args, value);
+        } else {
+            final long start = System.nanoTime();
+            try {
+                subscriber.invoke(token, args, value);
+            } finally {
+                final long end = System.nanoTime();
+                if (eventMetrics != null) {
+                    eventMetrics.getRecorder(token, mode).onExecuted(end - start);
+                }
+
+                if (recorder != null) {
+                    recorder.record(FlightRecorder.Type.DELIVER, token, mode, end, end - start, 0);
+                }
+            }
+        }
+    }
+
+    private static String threadName() {
+        return "EventBus-thread-" + nameSuffix.incrementAndGet();
+    }
+
+    /**
+     * Nested interface EventHandler
+     */
+    private static interface EventHandler {
+        /**
+         * Handles the event with the specified parameters.
+         * @param token The token, passed earlier by {@link EventBus#post} or
+         * {@link EventBus#postDelayed}.
+         * @param subscriber The {@link Subscriber} whose event method will be invoked.
+         * @param args The event method arguments, passed earlier by {@link EventBus#post}
+         * or {@link EventBus#postDelayed}.
+         * @param value The event value, passed earlier by {@link EventBus#postValue}. This
+         * parameter can only be used when the <em>args</em> is {@link EventBus#VALUE_ARGS}.
+         * @param key The key to order the event, passed earlier by {@link EventBus#postKeyed}, or
+         * the priority of the event, passed earlier by {@link EventBus#postPriority}, or
+         * {@link EventBus#NO_KEY}. This parameter can only be used {@link ThreadMode#KEYED}
+         * and {@link ThreadMode#PRIORITY} thread mode.
+         * @param delayMillis The delay (in milliseconds) until the event method will
+         * be invoked. This parameter can only be used {@link ThreadMode#MAIN} and
+         * {@link ThreadMode#HANDLER} thread mode.
+         */
+        void handleEvent(int token, Subscriber subscriber, Object[] args, long value, int key, long delayMillis);
+
+        /**
+         * Removes the pending events of the specified <em>subscriber</em>. The removed
+         * events are recorded as cancelled and recycled, they will not be delivered.
+         * @param subscriber The {@link Subscriber} whose events will be removed.
+         */
+        void removeEvents(Subscriber subscriber);
+    }
+
+    /**
+     * Nested class Subscriber
+     */
+    private static abstract class Subscriber extends WeakReference<Object> {
+        public final int token;
+        public final ThreadMode mode;
+
+        /**
+         * The value of the {@link EventBus#cancelClock} when the pending events of this
+         * subscriber were last cancelled, the events posted before it are not delivered.
+         */
+        public volatile long cancelStamp;
+
+        /**
+         * Constructor
+         * @param object The event subscriber.
+         * @param token The token to register.
+         * @param mode May be <tt>null</tt>. The {@link ThreadMode}
+         * that the events will be always delivered.
+         * @param queue The <tt>ReferenceQueue</tt> to enqueue this
+         * subscriber when the <em>object</em> was released by the GC.
+         */
+        protected Subscriber(Object object, int token, ThreadMode mode, ReferenceQueue<Object> queue) {
+            super(object, queue);
+            this.mode  = mode;
+            this.token = token;
+        }
+
+        /**
+         * Returns a new <tt>Subscriber</tt> bound to the event method of the <em>object</em>.
+         * If the class of the <em>object</em> is indexed or the <em>object</em> implements
+         * {@link EventReceiver}, returns a direct invoker, otherwise returns a reflective
+         * invoker of the <em>methodName</em>.
+         * @param object The event subscriber.
+         * @param methodName The event method name.
+         * @param token The token to register.
+         * @param mode May be <tt>null</tt>. The {@link ThreadMode}
+         * that the events will be always delivered.
+         * @param queue The <tt>ReferenceQueue</tt> to enqueue the
+         * subscriber when the <em>object</em> was released by the GC.
+         * @return A new <tt>Subscriber</tt>.
+         */
+        public static Subscriber newSubscriber(Object object, String methodName, int token, ThreadMode mode, ReferenceQueue<Object> queue) {
+            final SubscriberIndex.Invoker invoker = findInvoker(object.getClass());
+            if (invoker != null) {
+                return new IndexedSubscriber(object, invoker, token, (mode != null ? mode : invoker.mode), queue);
+            }
+
+            return (object instanceof EventReceiver ? new ReceiverSubscriber((EventReceiver)object, token, mode, queue) : new MethodSubscriber(object, methodName, token, mode, queue));
+        }
+
+        private static SubscriberIndex.Invoker findInvoker(Class<?> clazz) {
+            final SubscriberIndex[] indexes = subscriberIndexes;
+            if (indexes.length > 0) {
+                for (; clazz != Object.class; clazz = clazz.getSuperclass()) {
+                    for (int i = 0; i < indexes.length; ++i) {
+                        final SubscriberIndex.Invoker invoker = indexes[i].getInvoker(clazz);
+                        if (invoker != null) {
+                            return invoker;
+                        }
+                    }
+                }
+            }
+
+            return null;
+        }
+
+        /**
+         * Invokes the event method with the specified parameters.
+         * @param token The token to identify the event.
+         * @param args The event method arguments.
+         */
+        public abstract void invoke(int token, Object[] args);
+
+        /**
+         * Invokes the event method with the specified parameters, and returns its
+         * result. The default implementation returns <tt>null</tt>.
+         * @param token The token to identify the request.
+         * @param args The request arguments.
+         * @return The result of the event method. May be <tt>null</tt>.
+         */
+        public Object call(int token, Object[] args) {
+            invoke(token, args);
+            return null;
+        }
+
+        /**
+         * Invokes the event method with the specified parameters.
+         * @param token The token to identify the event.
+         * @param args The event method arguments, or {@link EventBus#VALUE_ARGS}
+         * if the payload is the <em>value</em>.
+         * @param value The event value.
+         */
+        public final void invoke(int token, Object[] args, long value) {
+            invoke(token, args, value, null);
+        }
+
+        /**
+         * Invokes the event method with the specified parameters.
+         * @param token The token to identify the event.
+         * @param args The event method arguments, or {@link EventBus#VALUE_ARGS}
+         * if the payload is the <em>value</em>.
+         * @param value The event value.
+         * @param valueArgs May be <tt>null</tt>. The one-element array reused
+         * to pass the boxed <em>value</em>, owned by the caller.
+         */
+        public final void invoke(int token, Object[] args, long value, Object[] valueArgs) {
+            if (args == VALUE_ARGS) {
+                invokeValue(token, value, valueArgs);
+            } else {
+                invoke(token, args);
+            }
+        }
+
+        /**
+         * Invokes the event method with the specified value. The default
+         * implementation passes the boxed value as the only argument.
+         * @param token The token to identify the event.
+         * @param value The event value.
+         * @param valueArgs May be <tt>null</tt>. The one-element array reused
+         * to pass the boxed <em>value</em>, owned by the caller.
+         */
+        protected void invokeValue(int token, long value, Object[] valueArgs) {
+            invoke(token, boxValue(value, valueArgs));
+        }
+
+        /**
+         * Returns the event method arguments holding the boxed <em>value</em>.
+         * The <em>valueArgs</em> is filled and returned if it is not <tt>null</tt>.
+         */
+        protected static Object[] boxValue(long value, Object[] valueArgs) {
+            if (valueArgs == null) {
+                return new Object[] { value };
+            }
+
+            valueArgs[0] = value;
+            return valueArgs;
+        }
+
+        /**
+         * Cancels all pending events of this subscriber. The cancelled events will
+         * not be delivered, and will be recycled when their handler dequeues them.
+         */
+        public final synchronized void cancel() {
+            // Never moves the stamp backwards, even if two cancellations race.
+            final long stamp = cancelClock.incrementAndGet();
+            if (cancelStamp < stamp) {
+                cancelStamp = stamp;
+            }
+        }
+
+        @Override
+        public String toString() {
+            final Object object = get();
+            return (object != null ? object.toString() : "null");
+        }
+    }
+
+    /**
+     * Nested class ReceiverSubscriber
+     */
+    private static final class ReceiverSubscriber extends Subscriber {
+        /**
+         * Constructor
+         * @param receiver The {@link EventReceiver}.
+         * @param token The token to register.
+         * @param mode May be <tt>null</tt>. The {@link ThreadMode}
+         * that the events will be always delivered.
+         * @param queue The <tt>ReferenceQueue</tt> to enqueue this
+         * subscriber when the <em>receiver</em> was released by the GC.
+         */
+        public ReceiverSubscriber(EventReceiver receiver, int token, ThreadMode mode, ReferenceQueue<Object> queue) {
+            super(receiver, token, mode, queue);
+        }
+
+        @Override
+        public void invoke(int token, Object[] args) {
+            final EventReceiver receiver = (EventReceiver)get();
+            if (receiver != null) {
+                receiver.onReceiveEvent(token, args);
+            }
+        }
+
+        @Override
+        public Object call(int token, Object[] args) {
+            final EventReceiver receiver = (EventReceiver)get();
+            if (receiver instanceof RequestReceiver) {
+                return ((RequestReceiver)receiver).onReceiveRequest(token, args);
+            } else if (receiver != null) {
+                receiver.onReceiveEvent(token, args);
+            }
+
+            return null;
+        }
+
+        @Override
+        protected void invokeValue(int token, long value, Object[] valueArgs) {
+            final EventReceiver receiver = (EventReceiver)get();
+            if (receiver instanceof ValueEventReceiver) {
+                ((ValueEventReceiver)receiver).onReceiveEvent(token, value);
+            } else if (receiver != null) {
+                receiver.onReceiveEvent(token, boxValue(value, valueArgs));
+            }
+        }
+    }
+
+    /**
+     * Nested class IndexedSubscriber
+     */
+    private static final class IndexedSubscriber extends Subscriber {
+        private final SubscriberIndex.Invoker invoker;
+
+        /**
+         * Constructor
+         * @param object The event subscriber.
+         * @param invoker The {@link SubscriberIndex.Invoker} of the event method.
+         * @param token The token to register.
+         * @param mode May be <tt>null</tt>. The {@link ThreadMode}
+         * that the events will be always delivered.
+         * @param queue The <tt>ReferenceQueue</tt> to enqueue this
+         * subscriber when the <em>object</em> was released by the GC.
+         */
+        public IndexedSubscriber(Object object, SubscriberIndex.Invoker invoker, int token, ThreadMode mode, ReferenceQueue<Object> queue) {
+            super(object, token, mode, queue);
+            this.invoker = invoker;
+        }
+
+        @Override
+        public void invoke(int token, Object[] args) {
+            call(token, args);
+        }
+
+        @Override
+        public Object call(int token, Object[] args) {
+            final Object object = get();
+            return (object != null ? invoker.invoke(object, token, args) : null);
+        }
+    }
+
+    /**
+     * Nested class MethodSubscriber
+     */
+    private static final class MethodSubscriber extends Subscriber {
+        private final Method method;
+
+        /**
+         * Constructor
+         * @param object The event subscriber.
+         * @param methodName The event method name.
+         * @param token The token to register.
+         * @param mode May be <tt>null</tt>. The {@link ThreadMode}
+         * that the events will be always delivered.
+         * @param queue The <tt>ReferenceQueue</tt> to enqueue this
+         * subscriber when the <em>object</em> was released by the GC.
+         */
+        public MethodSubscriber(Object object, String methodName, int token, ThreadMode mode, ReferenceQueue<Object> queue) {
+            super(object, token, mode, queue);
+            if ((method = getDeclaredMethod(object.getClass(), methodName)) == null) {
+                throw new IllegalArgumentException(new StringBuilder("Couldn't find method. [ subscriber = ").append(object).append(", method = ").append(methodName).append(" ]").toString());
+            }
+
+            method.setAccessible(true);
+        }
+
+        @Override
+        public void invoke(int token, Object[] args) {
+            call(token, args);
+        }
+
+        @Override
+        public Object call(int token, Object[] args) {
+            final Object object = get();
+            if (object != null) {
+                try {
+                    return method.invoke(object, token, args);
+                } catch (Exception e) {
+                    throw new RuntimeException(new StringBuilder("Couldn't invoke method. [ subscriber = ").append(object).append(", method = ").append(method).append(" ]").toString(), e);
+                }
+            }
+
+            return null;
+        }
+
+        private static Method getDeclaredMethod(Class<?> clazz, String methodName) {
+            for (; clazz != Object.class; clazz = clazz.getSuperclass()) {
+                try {
+                    return clazz.getDeclaredMethod(methodName, int.class, Object[].class);
+                } catch (NoSuchMethodException e) {
+                }
+            }
+
+            return null;
+        }
+    }
+
+    /**
+     * Nested class RequestSubscriber
+     */
+    private static final class RequestSubscriber extends Subscriber {
+        private final Subscriber subscriber;
+        private final ResponseFuture future;
+
+        /**
+         * Constructor
+         * @param object The event subscriber.
+         * @param subscriber The {@link Subscriber} to answer the request.
+         * @param future The {@link ResponseFuture} to complete.
+         */
+        public RequestSubscriber(Object object, Subscriber subscriber, ResponseFuture future) {
+            super(object, subscriber.token, subscriber.mode, null);
+            this.future = future;
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void invoke(int token, Object[] args) {
+            if (future.isPending()) {
+                Object response = null;
+                Throwable error = null;
+                try {
+                    response = subscriber.call(token, args);
+                } catch (Throwable e) {
+                    error = e;
+                }
+
+                future.onResponse(response, error);
+            }
+        }
+    }
+
+    /**
+     * Nested class CallbackSubscriber
+     */
+    private static final class CallbackSubscriber extends Subscriber {
+        private final ResponseFuture future;
+
+        /**
+         * Constructor
+         * @param future The completed {@link ResponseFuture}.
+         */
+        public CallbackSubscriber(ResponseFuture future) {
+            super(future, future.mToken, null, null);
+            this.future = future;
+        }
+
+        @Override
+        public void invoke(int token, Object[] args) {
+            future.invokeCallback();
+        }
+    }
+
+    /**
+     * Nested class StickyEvents
+     */
+    private static final class StickyEvents extends LinkedHashMap<Integer, StickyEvents.Entry> {
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The arguments stored in place of <tt>null</tt>.
+         */
+        public static final Object[] NO_ARGS = new Object[0];
+
+        private int capacity;
+        private long expiryMillis;
+
+        public StickyEvents(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        public synchronized void put(int token, Object[] args) {
+            put(token, new Entry(args != null ? args : NO_ARGS, SystemClock.uptimeMillis()));
+        }
+
+        public synchronized Object[] get(int token) {
+            final Entry entry = get((Object)token);
+            if (entry == null) {
+                return null;
+            }
+
+            if (expiryMillis > 0 && SystemClock.uptimeMillis() - entry.time >= expiryMillis) {
+                // The sticky event has expired.
+                remove((Object)token);
+                return null;
+            }
+
+            return entry.args;
+        }
+
+        public synchronized boolean remove(int token) {
+            return (remove((Object)token) != null);
+        }
+
+        @Override
+        public synchronized void clear() {
+            super.clear();
+        }
+
+        public synchronized void setPolicy(int capacity, long expiryMillis) {
+            this.capacity = capacity;
+            this.expiryMillis = expiryMillis;
+
+            // Evicts the least recently used tokens exceeding the new capacity.
+            final Iterator<Integer> itor = keySet().iterator();
+            while (size() > capacity && itor.hasNext()) {
+                itor.next();
+                itor.remove();
+            }
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Entry> eldest) {
+            return (size() > capacity);
+        }
+
+        /**
+         * Nested class Entry
+         */
+        /* package */ static final class Entry {
+            /* package */ final long time;
+            /* package */ final Object[] args;
+
+            /* package */ Entry(Object[] args, long time) {
+                this.args = args;
+                this.time = time;
+            }
+        }
+    }
+
+    /**
+     * Nested class RateLimiter
+     */
+    private final class RateLimiter implements Runnable {
+        private final int token;
+        private final long interval;
+        private final RatePolicy policy;
+        private final boolean temporary;
+
+        private ThreadMode mode;
+        private Object[] args;
+        private long stamp;
+        private boolean pending;
+        private boolean detached;
+        private long lastPostTime;
+        private TimerWheel.Timeout timeout;
+
+        /**
+         * Constructor
+         * @param token The token to limit.
+         * @param policy The {@link RatePolicy}.
+         * @param interval The interval (in milliseconds) of the <em>policy</em>.
+         * @param temporary Whether this limiter removes itself once no event is pending.
+         */
+        public RateLimiter(int token, RatePolicy policy, long interval, boolean temporary) {
+            this.token  = token;
+            this.policy = policy;
+            this.interval  = interval;
+            this.temporary = temporary;
+        }
+
+        /**
+         * Offers the event to this limiter.
+         * @return <tt>false</tt> if this limiter was detached, <tt>true</tt> otherwise.
+         */
+        public boolean offer(ThreadMode mode, Object[] args) {
+            boolean leading = false;
+            synchronized (this) {
+                if (detached) {
+                    return false;
+                }
+
+                lastPostTime = SystemClock.uptimeMillis();
+                if (timeout == null) {
+                    timeout = getTimer().schedule(this, interval);
+                    leading = (policy == RatePolicy.THROTTLE);
+                }
+
+                if (!leading) {
+                    // Replaces the pending event with the latest.
+                    this.mode = mode;
+                    this.args = args;
+                    stamp = cancelClock.get();
+                    pending = true;
+                }
+            }
+
+            if (leading) {
+                // The leading event of a throttle window is delivered immediately.
+                dispatchEvent(token, mode, NO_KEY, 0, args, 0);
+            }
+
+            return true;
+        }
+
+        /**
+         * Detaches this limiter, the pending event is discarded.
+         */
+        public synchronized void detach() {
+            detached = true;
+            args = null;
+            pending = false;
+            if (timeout != null) {
+                timeout.cancel();
+                timeout = null;
+            }
+        }
+
+        @Override
+        public void run() {
+            final ThreadMode mode;
+            final Object[] args;
+            final long stamp;
+            synchronized (this) {
+                if (detached) {
+                    return;
+                }
+
+                final long elapsed = SystemClock.uptimeMillis() - lastPostTime;
+                if (policy == RatePolicy.DEBOUNCE && elapsed < interval) {
+                    // An event was posted during the quiet period, waits for the remaining time.
+                    timeout = getTimer().schedule(this, interval - elapsed);
+                    return;
+                }
+
+                if (!pending) {
+                    // No event was posted during the interval, this limiter is idle.
+                    timeout = null;
+                    if (temporary) {
+                        detached = true;
+                        mRateLimiters.remove(token, this);
+                    }
+
+                    return;
+                }
+
+                mode  = this.mode;
+                args  = this.args;
+                stamp = this.stamp;
+                this.args = null;
+                pending = false;
+
+                // The THROTTLE opens the next window and the SAMPLE waits for the next
+                // sample, the DEBOUNCE becomes idle at the next run.
+                timeout = getTimer().schedule(this, (policy == RatePolicy.DEBOUNCE ? 0 : interval));
+            }
+
+            dispatchEvent(token, mode, NO_KEY, 0, args, 0, stamp);
+        }
+    }
+
+    /**
+     * Nested class ScheduledEvent
+     */
+    private final class ScheduledEvent implements Runnable {
+        private final int token;
+        private final int key;
+        private final long value;
+        private final long stamp;
+        private final ThreadMode mode;
+        private final Object[] args;
+
+        public ScheduledEvent(int token, ThreadMode mode, int key, Object[] args, long value) {
+            this.token = token;
+            this.mode  = mode;
+            this.key   = key;
+            this.args  = args;
+            this.value = value;
+            this.stamp = cancelClock.get();
+        }
+
+        @Override
+        public void run() {
+            dispatchEvent(token, mode, key, 0, args, value, stamp);
+        }
+    }
+
+    /**
+     * Nested class SubscriberMap
+     */
+    private static final class SubscriberMap {
+        public static final SubscriberMap EMPTY = new SubscriberMap(new int[0], new Subscriber[0][]);
+
+        private final int[] tokens;
+        private final Subscriber[][] values;
+
+        private SubscriberMap(int[] tokens, Subscriber[][] values) {
+            this.tokens = tokens;
+            this.values = values;
+        }
+
+        /**
+         * Returns the {@link Subscriber}s mapped from the specified <em>token</em>.
+         * @param token The token to find.
+         * @return The <tt>Subscriber</tt> array, or <tt>null</tt> if there is no mapping.
+         */
+        public Subscriber[] get(int token) {
+            final int index = Arrays.binarySearch(tokens, token);
+            return (index >= 0 ? values[index] : null);
+        }
+
+        /**
+         * Returns a new <tt>SubscriberMap</tt> which maps the <em>token</em>
+         * to the <em>subscribers</em>. This map is not modified.
+         * @param token The token to map.
+         * @param subscribers The <tt>Subscriber</tt> array. If <tt>null</tt>,
+         * the mapping of the <em>token</em> will be removed.
+         * @return A new <tt>SubscriberMap</tt>.
+         */
+        public SubscriberMap put(int token, Subscriber[] subscribers) {
+            if (subscribers == null) {
+                return remove(token);
+            }
+
+            int index = Arrays.binarySearch(tokens, token);
+            if (index >= 0) {
+                final Subscriber[][] newValues = values.clone();
+                newValues[index] = subscribers;
+                return new SubscriberMap(tokens, newValues);
+            }
+
+            index = ~index;
+            final int length = tokens.length;
+            final int[] newTokens = new int[length + 1];
+            final Subscriber[][] newValues = new Subscriber[length + 1][];
+            System.arraycopy(tokens, 0, newTokens, 0, index);
+            System.arraycopy(values, 0, newValues, 0, index);
+            System.arraycopy(tokens, index, newTokens, index + 1, length - index);
+            System.arraycopy(values, index, newValues, index + 1, length - index);
+            newTokens[index] = token;
+            newValues[index] = subscribers;
+
+            return new SubscriberMap(newTokens, newValues);
+        }
+
+        /**
+         * Returns a new <tt>SubscriberMap</tt> without the mapping
+         * of the <em>token</em>. This map is not modified.
+         * @param token The token to remove.
+         * @return A new <tt>SubscriberMap</tt>, or this map if
+         * there is no mapping.
+         */
+        public SubscriberMap remove(int token) {
+            final int index = Arrays.binarySearch(tokens, token);
+            if (index < 0) {
+                return this;
+            }
+
+            final int length = tokens.length - 1;
+            final int[] newTokens = new int[length];
+            final Subscriber[][] newValues = new Subscriber[length][];
+            System.arraycopy(tokens, 0, newTokens, 0, index);
+            System.arraycopy(values, 0, newValues, 0, index);
+            System.arraycopy(tokens, index + 1, newTokens, index, length - index);
+            System.arraycopy(values, index + 1, newValues, index, length - index);
+
+            return new SubscriberMap(newTokens, newValues);
+        }
+    }
+
+    /**
+     * Nested class PostHandler
+     */
+    private static final class PostHandler implements EventHandler {
+        @Override
+        public void handleEvent(int token, Subscriber subscriber, Object[] args, long value, int key, long delayMillis) {
+            invokeEvent(ThreadMode.POST, token, subscriber, args, value);
+        }
+
+        @Override
+        public void removeEvents(Subscriber subscriber) {
+            // The events are delivered directly, nothing is pending.
+        }
+    }
+
+    /**
+     * Nested class MainHandler
+     */
+    private static final class MainHandler extends Handler implements EventHandler {
+        private final LooperQueue mQueue;
+
+        public MainHandler() {
+            super(Looper.getMainLooper());
+            mQueue = new LooperQueue(this);
+        }
+
+        @Override
+        public void handleEvent(int token, Subscriber subscriber, Object[] args, long value, int key, long delayMillis) {
+            if (delayMillis <= 0 && getLooper() == Looper.myLooper()) {
+                // If delayMillis <= 0 and Posting thread is
+                // main thread, call event method directly.
+                invokeEvent(ThreadMode.MAIN, token, subscriber, args, value);
+            } else {
+                // Posts the event to the pending queue of the main thread.
+                mQueue.post(PendingEvent.obtain(ThreadMode.MAIN, token, subscriber, args, value), delayMillis);
+            }
+        }
+
+        @Override
+        public void removeEvents(Subscriber subscriber) {
+            mQueue.removeEvents(subscriber);
+        }
+
+        /**
+         * Runs the supplied <em>runnable</em> on the main thread. The
+         * method will block only if the current thread is the main thread.
+         * @param runnable The <tt>Runnable</tt> to run.
+         */
+        public void runOnUIThread(Runnable runnable) {
+            if (getLooper() == Looper.myLooper()) {
+                runnable.run();
+            } else {
+                post(runnable);
+            }
+        }
+
+        /**
+         * Runs the supplied <em>runnable</em> on the main thread.
+         * The method will block until the Runnable completes.
+         * @param runnable The <tt>Runnable</tt> to run.
+         * @throws Exception if an error occurs while running to
+         * <em>runnable</em>.
+         */
+        public void runOnUIThreadBlocking(Runnable runnable) throws Exception {
+            if (getLooper() == Looper.myLooper()) {
+                runnable.run();
+            } else {
+                runTask(new FutureTask<Void>(runnable, null));
+            }
+        }
+
+        /**
+         * Runs the supplied <em>callable</em> on the main thread.
+         * The method will block until the Callable completes.
+         * @param callable The <tt>Callable</tt> to run.
+         * @return The <tt>Callable</tt> returned result.
+         * @throws Exception if an error occurs while running to
+         * <em>callable</em>.
+         */
+        public <T> T runOnUIThreadBlocking(Callable<T> callable) throws Exception {
+            return (getLooper() == Looper.myLooper() ? callable.call() : runTask(new FutureTask<T>(callable)));
+        }
+
+        private <T> T runTask(FutureTask<T> task) throws Exception {
+            post(task);
+            return task.get();
+        }
+    }
+
+    /**
+     * Nested class AsyncHandler
+     */
+    private static final class AsyncHandler implements EventHandler {
+        @Override
+        public void handleEvent(int token, Subscriber subscriber, Object[] args, long value, int key, long delayMillis) {
+            executor.execute(PendingEvent.obtain(ThreadMode.ASYNC, token, subscriber, args, value));
+        }
+
+        @Override
+        public void removeEvents(Subscriber subscriber) {
+            // The events are queued by the executor, they are cancelled when they run.
+        }
+    }
+
+    /**
+     * Nested class LooperQueue
+     */
+    private static final class LooperQueue implements Runnable {
+        /**
+         * The maximum number of events delivered by a run before it yields
+         * the looper thread to the other messages.
+         */
+        private static final int DRAIN_QUANTUM = 64;
+
+        private final Handler mHandler;
+
+        /**
+         * The binary min-heap of the pending events ordered by their due time
+         * (in {@link SystemClock#uptimeMillis()}), stored in {@link PendingEvent#rank},
+         * and the sequence to order the events with the same due time, all guarded by
+         * this object. Only this <tt>Runnable</tt> is posted to the looper, woken up at
+         * the due time of the head, so the pending events can be removed and recycled.
+         */
+        private PendingEvent[] mHeap = new PendingEvent[16];
+        private int mCount;
+        private long mSequence;
+        private long mWakeTime = Long.MAX_VALUE;
+
+        /**
+         * Constructor
+         * @param handler The <tt>Handler</tt> of the looper to deliver the events.
+         */
+        public LooperQueue(Handler handler) {
+            mHandler = handler;
+        }
+
+        /**
+         * Posts the <em>event</em> to this queue.
+         * @param event The {@link PendingEvent} to post.
+         * @param delayMillis The delay (in milliseconds) until the event will be delivered.
+         */
+        public synchronized void post(PendingEvent event, long delayMillis) {
+            final long time = SystemClock.uptimeMillis() + Math.max(delayMillis, 0);
+            event.rank = time;
+            event.sequence = ++mSequence;
+            mHeap = offerHeap(mHeap, mCount++, event);
+            wakeAt(time);
+        }
+
+        /**
+         * Returns whether this queue has no pending event.
+         */
+        public synchronized boolean isEmpty() {
+            return (mCount == 0);
+        }
+
+        /**
+         * Removes the pending events of the <em>subscriber</em>, the removed events are cancelled.
+         * @param subscriber The {@link Subscriber} whose events will be removed.
+         */
+        public void removeEvents(Subscriber subscriber) {
+            final PendingEvent removed;
+            synchronized (this) {
+                removed = removeHeap(mHeap, mCount, subscriber);
+                for (PendingEvent event = removed; event != null; event = event.next) {
+                    --mCount;
+                }
+            }
+
+            PendingEvent.cancelAll(removed);
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                mWakeTime = Long.MAX_VALUE;
+            }
+
+            for (int quantum = DRAIN_QUANTUM; ; --quantum) {
+                final PendingEvent event;
+                synchronized (this) {
+                    if (mCount == 0) {
+                        return;
+                    }
+
+                    final long now = SystemClock.uptimeMillis();
+                    final long time = mHeap[0].rank;
+                    if (time > now || quantum == 0) {
+                        // Wakes up at the due time of the head, or at once to
+                        // deliver the remaining due events after the other messages.
+                        wakeAt(Math.max(time, now));
+                        return;
+                    }
+
+                    event = pollHeap(mHeap, --mCount);
+                }
+
+                event.run();
+            }
+        }
+
+        /**
+         * Posts this <tt>Runnable</tt> to run at the <em>time</em>, unless it will run
+         * earlier. The caller must hold this lock.
+         */
+        private void wakeAt(long time) {
+            if (time < mWakeTime) {
+                if (mWakeTime != Long.MAX_VALUE) {
+                    mHandler.removeCallbacks(this);
+                }
+
+                mWakeTime = time;
+                mHandler.postAtTime(this, time);
+            }
+        }
+    }
+
+    /**
+     * Nested class SequenceHandler
+     */
+    private static class SequenceHandler implements EventHandler, Runnable {
+        /**
+         * The maximum number of events delivered by a drain loop before it yields
+         * the executor thread, so that many handlers share a bounded executor fairly.
+         */
+        private static final int DRAIN_QUANTUM = 64;
+
+        protected final AtomicInteger mState;
+
+        /**
+         * The intrusive pending queue linked by {@link PendingEvent#next}, and
+         * its statistics, all guarded by this object. Offering and polling an
+         * event never allocate.
+         */
+        private PendingEvent mHead;
+        private PendingEvent mTail;
+        private int mSize;
+        private int mWaiters;
+        private int mHighWaterMark;
+        private long mDropCount;
+        private int mCapacity;
+        private OverflowPolicy mPolicy;
+        private volatile Thread mRunningThread;
+
+        public SequenceHandler() {
+            mState = new AtomicInteger(IDLE);
+            mCapacity = Integer.MAX_VALUE;
+            mPolicy   = OverflowPolicy.BLOCK;
+        }
+
+        @Override
+        public void handleEvent(int token, Subscriber subscriber, Object[] args, long value, int key, long delayMillis) {
+            postEvent(PendingEvent.obtain(ThreadMode.SEQUENCE, token, subscriber, args, value));
+        }
+
+        @Override
+        public void run() {
+            mRunningThread = Thread.currentThread();
+            try {
+                int quantum = DRAIN_QUANTUM;
+                do {
+                    boolean yielded = false;
+                    try {
+                        PendingEvent event = null;
+                        while ((event = pollEvent()) != null) {
+                            event.run();
+                            if (--quantum == 0 && !isEmpty()) {
+                                // Yields the thread to the other tasks of the executor,
+                                // the state stays RUNNING to keep the events in order.
+                                // The running thread is cleared before the next runner
+                                // may set it.
+                                mRunningThread = null;
+                                executor.execute(this);
+                                yielded = true;
+                                return;
+                            }
+                        }
+                    } finally {
+                        if (!yielded) {
+                            mState.set(IDLE);
+                        }
+                    }
+
+                    // Check again, an event may be posted
+                    // before the state was set to IDLE.
+                } while (!isEmpty() && mState.compareAndSet(IDLE, RUNNING));
+            } finally {
+                if (mRunningThread == Thread.currentThread()) {
+                    mRunningThread = null;
+                }
+            }
+        }
+
+        /**
+         * Sets the capacity and overflow policy of the pending queue.
+         * @param capacity The maximum number of pending events.
+         * @param policy The {@link OverflowPolicy}.
+         */
+        public final synchronized void setCapacity(int capacity, OverflowPolicy policy) {
+            mPolicy   = policy;
+            mCapacity = capacity;
+            notifyAll();
+        }
+
+        /**
+         * Returns the statistics of the pending queue.
+         * @return The {@link QueueStats}.
+         */
+        public final synchronized QueueStats getStats() {
+            return new QueueStats(mCapacity, mSize, mHighWaterMark, mDropCount);
+        }
+
+        /**
+         * Retrieves and removes the head of the pending queue.
+         * @return The head of the queue, or <tt>null</tt> if the queue is empty.
+         */
+        protected synchronized PendingEvent pollEvent() {
+            final PendingEvent event = unlinkEvent();
+            if (event != null) {
+                if (mSize-- <= mCapacity && mWaiters > 0) {
+                    notifyAll();
+                }
+            }
+
+            return event;
+        }
+
+        protected final synchronized boolean isEmpty() {
+            return (mSize == 0);
+        }
+
+        protected final void postEvent(PendingEvent event) {
+            if (offerEvent(event)) {
+                execute();
+            }
+        }
+
+        protected final void execute() {
+            if (mState.get() == IDLE && mState.compareAndSet(IDLE, RUNNING)) {
+                // If executor is not running, run it.
+                executor.execute(this);
+            }
+        }
+
+        /**
+         * Appends the <em>event</em> to the tail of the pending queue,
+         * regardless of the capacity. The caller must hold this lock.
+         * @param event The {@link PendingEvent} to append.
+         */
+        protected final void enqueue(PendingEvent event) {
+            linkEvent(event);
+            if (++mSize > mHighWaterMark) {
+                mHighWaterMark = mSize;
+            }
+        }
+
+        /**
+         * Links the <em>event</em> to the tail of the pending queue.
+         * The caller must hold this lock.
+         * @param event The {@link PendingEvent} to link.
+         */
+        protected void linkEvent(PendingEvent event) {
+            if (mTail == null) {
+                mHead = event;
+            } else {
+                mTail.next = event;
+            }
+
+            mTail = event;
+        }
+
+        /**
+         * Unlinks the head of the pending queue. The caller must hold this lock.
+         * @return The head of the queue, or <tt>null</tt> if the queue is empty.
+         */
+        protected PendingEvent unlinkEvent() {
+            final PendingEvent event = mHead;
+            if (event != null) {
+                if ((mHead = event.next) == null) {
+                    mTail = null;
+                }
+
+                event.next = null;
+            }
+
+            return event;
+        }
+
+        private synchronized boolean offerEvent(PendingEvent event) {
+            while (mSize >= mCapacity && mRunningThread != Thread.currentThread()) {
+                switch (mPolicy) {
+                case DROP_OLDEST:
+                    // Replaces the oldest event, the size is unchanged.
+                    dropEvent(pollEvent());
+                    break;
+
+                case DROP_NEWEST:
+                    dropEvent(event);
+                    return false;
+
+                case FAIL:
+                    dropEvent(event);
+                    throw new RejectedExecutionException("The EventBus queue is full. [ capacity = " + mCapacity + " ]");
+
+                default:
+                    // OverflowPolicy.BLOCK, waits for the queue has space. A worker
+                    // of the bounded pool never waits, all workers may wait while
+                    // the drain loop which would make space is queued behind them.
+                    if (isPoolWorker()) {
+                        enqueue(event);
+                        return true;
+                    }
+
+                    ++mWaiters;
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        dropEvent(event);
+                        throw new RejectedExecutionException("Interrupted while waiting for the EventBus queue.");
+                    } finally {
+                        --mWaiters;
+                    }
+                }
+            }
+
+            enqueue(event);
+            return true;
+        }
+
+        private void dropEvent(PendingEvent event) {
+            ++mDropCount;
+            event.discard();
+        }
+
+        @Override
+        public final void removeEvents(Subscriber subscriber) {
+            final PendingEvent removed;
+            synchronized (this) {
+                removed = unlinkEvents(subscriber);
+                if (removed != null) {
+                    // The overflow policies see only the live events.
+                    final boolean full = (mSize >= mCapacity);
+                    for (PendingEvent event = removed; event != null; event = event.next) {
+                        --mSize;
+                    }
+
+                    if (full && mSize < mCapacity && mWaiters > 0) {
+                        notifyAll();
+                    }
+                }
+            }
+
+            PendingEvent.cancelAll(removed);
+        }
+
+        /**
+         * Unlinks the events of the <em>subscriber</em> from the pending queue.
+         * The caller must hold this lock.
+         * @param subscriber The {@link Subscriber} whose events will be unlinked.
+         * @return The unlinked events linked by {@link PendingEvent#next},
+         * or <tt>null</tt> if there is no such event.
+         */
+        protected PendingEvent unlinkEvents(Subscriber subscriber) {
+            PendingEvent removed = null, prev = null;
+            for (PendingEvent event = mHead, next; event != null; event = next) {
+                next = event.next;
+                if (event.subscriber != subscriber) {
+                    prev = event;
+                    continue;
+                }
+
+                if (prev == null) {
+                    mHead = next;
+                } else {
+                    prev.next = next;
+                }
+
+                if (mTail == event) {
+                    mTail = prev;
+                }
+
+                event.next = removed;
+                removed = event;
             }
 
-            return subscriber;
+            return removed;
         }
-    }
 
-    private static String threadName() {
-        return "EventBus-thread-" + nameSuffix.incrementAndGet();
+        private static boolean isPoolWorker() {
+            final Executor current = executor;
+            return (current instanceof WorkerPool && ((WorkerPool)current).isWorkerThread());
+        }
     }
 
     /**
-     * Nested interface EventHandler
+     * Nested class PriorityHandler
      */
-    private static interface EventHandler {
+    private static final class PriorityHandler extends SequenceHandler {
         /**
-         * Handles the event with the specified parameters.
-         * @param token The token, passed earlier by {@link EventBus#post} or
-         * {@link EventBus#postDelayed}.
-         * @param subscriber The {@link Subscriber} whose event method will be invoked.
-         * @param args The event method arguments, passed earlier by {@link EventBus#post}
-         * or {@link EventBus#postDelayed}.
-         * @param delayMillis The delay (in milliseconds) until the event method will
-         * be invoked. This parameter can only be used {@link ThreadMode#MAIN} and
-         * {@link ThreadMode#HANDLER} thread mode.
+         * The time (in nanoseconds) a priority level is worth. The rank of an event is its
+         * post time minus its priority multiplied by this time, the lower rank is delivered
+         * first, so an event ages into the higher priority while it is pending.
          */
-        void handleEvent(int token, Subscriber subscriber, Object[] args, long delayMillis);
-    }
-
-    /**
-     * Nested class Subscriber
-     */
-    private static final class Subscriber {
-        private final Method method;
-        private final WeakReference<Object> objectRef;
+        private static final long AGING_NANOS = 50 * 1000000L;
 
         /**
-         * Constructor
-         * @param object The event subscriber.
-         * @param methodName The event method name.
+         * The binary min-heap of the pending events ordered by their rank,
+         * and the sequence to order the events with the same rank.
          */
-        public Subscriber(Object object, String methodName) {
-            objectRef = new WeakReference<Object>(object);
-            if ((method = getDeclaredMethod(object.getClass(), methodName)) == null) {
-                throw new IllegalArgumentException(new StringBuilder("Couldn't find method. [ subscriber = ").append(object).append(", method = ").append(methodName).append(" ]").toString());
-            }
-
-            method.setAccessible(true);
-        }
+        private PendingEvent[] mHeap = new PendingEvent[16];
+        private int mCount;
+        private long mSequence;
 
-        /**
-         * Invokes the event method with the specified parameters.
-         * @param args The arguments to the event method.
-         */
-        public void invoke(Object... args) {
-            final Object object = objectRef.get();
-            if (object != null) {
-                try {
-                    method.invoke(object, args);
-                } catch (Exception e) {
-                    throw new RuntimeException(new StringBuilder("Couldn't invoke method. [ subscriber = ").append(object).append(", method = ").append(method).append(" ]").toString(), e);
-                }
-            }
+        @Override
+        public void handleEvent(int token, Subscriber subscriber, Object[] args, long value, int key, long delayMillis) {
+            final PendingEvent event = PendingEvent.obtain(ThreadMode.PRIORITY, token, subscriber, args, value);
+            event.rank = System.nanoTime() - (key != NO_KEY ? key : 0) * AGING_NANOS;
+            postEvent(event);
         }
 
         @Override
-        public int hashCode() {
-            final Object object = objectRef.get();
-            return (object != null ? object.hashCode() : 0);
+        protected void linkEvent(PendingEvent event) {
+            event.sequence = ++mSequence;
+            mHeap = offerHeap(mHeap, mCount++, event);
         }
 
         @Override
-        public String toString() {
-            final Object object = objectRef.get();
-            return (object != null ? object.toString() : "null");
+        protected PendingEvent unlinkEvent() {
+            return (mCount > 0 ? pollHeap(mHeap, --mCount) : null);
         }
 
-        private static Method getDeclaredMethod(Class<?> clazz, String methodName) {
-            for (; clazz != Object.class; clazz = clazz.getSuperclass()) {
-                try {
-                    return clazz.getDeclaredMethod(methodName, int.class, Object[].class);
-                } catch (NoSuchMethodException e) {
-                }
+        @Override
+        protected PendingEvent unlinkEvents(Subscriber subscriber) {
+            final PendingEvent removed = removeHeap(mHeap, mCount, subscriber);
+            for (PendingEvent event = removed; event != null; event = event.next) {
+                --mCount;
             }
 
-            return null;
+            return removed;
         }
     }
 
     /**
-     * Nested class PostHandler
+     * Nested class SingleHandler
      */
-    private static final class PostHandler implements EventHandler {
+    private static final class SingleHandler extends SequenceHandler {
+        /**
+         * The map {@link Subscriber}s to their pending events, guarded by this
+         * object. Since a <tt>Subscriber</tt> is bound to the token it was registered
+         * with, the <tt>Subscriber</tt> itself is the key of (token, subscriber).
+         */
+        private final Map<Subscriber, PendingEvent> mPendingEvents = new HashMap<Subscriber, PendingEvent>();
+        private final AtomicLong mConflatedCount = new AtomicLong();
+
         @Override
-        public void handleEvent(int token, Subscriber subscriber, Object[] args, long delayMillis) {
-            subscriber.invoke(token, args);
-        }
-    }
+        public void handleEvent(int token, Subscriber subscriber, Object[] args, long value, int key, long delayMillis) {
+            synchronized (this) {
+                PendingEvent event = mPendingEvents.get(subscriber);
+                if (event != null && !event.isCancelled()) {
+                    // The event is still pending, replaces its arguments.
+                    event.args  = args;
+                    event.value = value;
+                    mConflatedCount.incrementAndGet();
+                    return;
+                }
 
-    /**
-     * Nested class MainHandler
-     */
-    private static final class MainHandler extends Handler implements EventHandler {
-        public MainHandler() {
-            super(Looper.getMainLooper());
+                event = PendingEvent.obtain(ThreadMode.SINGLE, token, subscriber, args, value);
+                mPendingEvents.put(subscriber, event);
+                enqueue(event);
+            }
+
+            execute();
         }
 
         @Override
-        public void handleEvent(int token, Subscriber subscriber, Object[] args, long delayMillis) {
-            if (delayMillis <= 0 && getLooper() == Looper.myLooper()) {
-                // If delayMillis <= 0 and Posting thread is
-                // main thread, call event method directly.
-                subscriber.invoke(token, args);
-            } else {
-                // Posts the event to the message queue.
-                postDelayed(PendingEvent.obtain(token, subscriber, args), delayMillis);
+        protected synchronized PendingEvent pollEvent() {
+            final PendingEvent event = super.pollEvent();
+            if (event != null && mPendingEvents.get(event.subscriber) == event) {
+                mPendingEvents.remove(event.subscriber);
             }
+
+            return event;
         }
 
-        /**
-         * Runs the supplied <em>runnable</em> on the main thread. The
-         * method will block only if the current thread is the main thread.
-         * @param runnable The <tt>Runnable</tt> to run.
-         */
-        public void runOnUIThread(Runnable runnable) {
-            if (getLooper() == Looper.myLooper()) {
-                runnable.run();
-            } else {
-                post(runnable);
-            }
+        @Override
+        protected PendingEvent unlinkEvents(Subscriber subscriber) {
+            mPendingEvents.remove(subscriber);
+            return super.unlinkEvents(subscriber);
         }
 
         /**
-         * Runs the supplied <em>runnable</em> on the main thread.
-         * The method will block until the Runnable completes.
-         * @param runnable The <tt>Runnable</tt> to run.
-         * @throws Exception if an error occurs while running to
-         * <em>runnable</em>.
+         * Returns the number of events which were conflated into a pending event.
+         * @return The number of conflated events.
          */
-        public void runOnUIThreadBlocking(Runnable runnable) throws Exception {
-            if (getLooper() == Looper.myLooper()) {
-                runnable.run();
-            } else {
-                runTask(new FutureTask<Void>(runnable, null));
-            }
+        public long getConflatedCount() {
+            return mConflatedCount.get();
         }
+    }
 
+    /**
+     * Nested class KeyedHandler
+     */
+    private static final class KeyedHandler implements EventHandler {
         /**
-         * Runs the supplied <em>callable</em> on the main thread.
-         * The method will block until the Callable completes.
-         * @param callable The <tt>Callable</tt> to run.
-         * @return The <tt>Callable</tt> returned result.
-         * @throws Exception if an error occurs while running to
-         * <em>callable</em>.
+         * The lanes, each lane delivers its events sequentially. The keys are
+         * striped over a fixed number of lanes, so that there is no thread or
+         * queue per key.
          */
-        public <T> T runOnUIThreadBlocking(Callable<T> callable) throws Exception {
-            return (getLooper() == Looper.myLooper() ? callable.call() : runTask(new FutureTask<T>(callable)));
+        private final SequenceHandler[] mLanes;
+
+        public KeyedHandler() {
+            int count = 1;
+            while (count < Runtime.getRuntime().availableProcessors() * 4) {
+                count <<= 1;
+            }
+
+            mLanes = new SequenceHandler[count];
+            for (int i = 0; i < count; ++i) {
+                mLanes[i] = new SequenceHandler();
+            }
         }
 
-        private <T> T runTask(FutureTask<T> task) throws Exception {
-            post(task);
-            return task.get();
+        @Override
+        public void handleEvent(int token, Subscriber subscriber, Object[] args, long value, int key, long delayMillis) {
+            if (key == NO_KEY) {
+                // The events posted without a key are ordered by the token.
+                key = token;
+            }
+
+            // Spreads the higher bits of the key to the lower bits.
+            key ^= (key >>> 16);
+            mLanes[key & (mLanes.length - 1)].postEvent(PendingEvent.obtain(ThreadMode.KEYED, token, subscriber, args, value));
         }
-    }
 
-    /**
-     * Nested class AsyncHandler
-     */
-    private static final class AsyncHandler implements EventHandler {
         @Override
-        public void handleEvent(int token, Subscriber subscriber, Object[] args, long delayMillis) {
-            executor.execute(PendingEvent.obtain(token, subscriber, args));
+        public void removeEvents(Subscriber subscriber) {
+            for (int i = 0; i < mLanes.length; ++i) {
+                mLanes[i].removeEvents(subscriber);
+            }
         }
     }
 
     /**
-     * Nested class SequenceHandler
+     * Nested class FrameHandler
      */
-    private static class SequenceHandler implements EventHandler, Runnable {
-        protected final AtomicInteger mState;
-        protected final Queue<PendingEvent> mQueue;
+    private static final class FrameHandler implements EventHandler, Runnable {
+        /**
+         * The frame interval (in milliseconds), 60 frames per second.
+         */
+        private static final long FRAME_MILLIS = 16;
 
-        public SequenceHandler() {
-            mState = new AtomicInteger(IDLE);
-            mQueue = new ConcurrentLinkedQueue<PendingEvent>();
-        }
+        /**
+         * The maximum time (in milliseconds) to deliver events in a frame.
+         */
+        private static final long FRAME_BUDGET_MILLIS = 8;
 
-        @Override
-        public void handleEvent(int token, Subscriber subscriber, Object[] args, long delayMillis) {
-            postEvent(PendingEvent.obtain(token, subscriber, args));
-        }
+        /**
+         * The pending events of the next frame linked by {@link PendingEvent#next},
+         * and the map {@link Subscriber}s to their pending events, all guarded by
+         * this object.
+         */
+        private PendingEvent mHead;
+        private PendingEvent mTail;
+        private boolean mScheduled;
+        private final Map<Subscriber, PendingEvent> mPendingEvents = new HashMap<Subscriber, PendingEvent>();
 
         @Override
-        public void run() {
-            try {
-                PendingEvent event = null;
-                while ((event = mQueue.poll()) != null) {
-                    event.run();
+        public void handleEvent(int token, Subscriber subscriber, Object[] args, long value, int key, long delayMillis) {
+            synchronized (this) {
+                PendingEvent event = mPendingEvents.get(subscriber);
+                if (event != null && !event.isCancelled()) {
+                    // The event is still pending in this frame, replaces its arguments.
+                    event.args  = args;
+                    event.value = value;
+                    return;
                 }
-            } finally {
-                mState.set(IDLE);
-            }
-        }
 
-        protected final void postEvent(PendingEvent event) {
-            mQueue.offer(event);
-            if (mState.get() == IDLE && mState.getAndSet(RUNNING) == IDLE) {
-                // If executor is not running, run it.
-                executor.execute(this);
+                event = PendingEvent.obtain(ThreadMode.FRAME, token, subscriber, args, value);
+                mPendingEvents.put(subscriber, event);
+                if (mTail == null) {
+                    mHead = event;
+                } else {
+                    mTail.next = event;
+                }
+
+                mTail = event;
+                if (!mScheduled) {
+                    mScheduled = true;
+                    scheduleFrame();
+                }
             }
         }
-    }
 
-    /**
-     * Nested class SingleHandler
-     */
-    private static final class SingleHandler extends SequenceHandler {
         @Override
-        public void handleEvent(int token, Subscriber subscriber, Object[] args, long delayMillis) {
-            final PendingEvent event = PendingEvent.obtain(token, subscriber, args);
-            if (mQueue.contains(event)) {
-                // If mQueue contains the event, discards it.
-                Log.w(EventBus.class.getName(), "The EventBus contains the event - " + event + ", discards it.");
-                PendingEvent.POOL.recycle(event);
-            } else {
-                postEvent(event);
+        public void run() {
+            final long start = SystemClock.uptimeMillis();
+            while (true) {
+                final PendingEvent event;
+                synchronized (this) {
+                    if ((event = mHead) == null) {
+                        mScheduled = false;
+                        return;
+                    }
+
+                    if ((mHead = event.next) == null) {
+                        mTail = null;
+                    }
+
+                    event.next = null;
+                    if (mPendingEvents.get(event.subscriber) == event) {
+                        mPendingEvents.remove(event.subscriber);
+                    }
+                }
+
+                event.run();
+                if (SystemClock.uptimeMillis() - start >= FRAME_BUDGET_MILLIS) {
+                    synchronized (this) {
+                        // Rolls the remaining events over to the next frame.
+                        if (mHead != null) {
+                            scheduleFrame();
+                        } else {
+                            mScheduled = false;
+                        }
+                    }
+
+                    return;
+                }
             }
         }
 
         @Override
-        public void run() {
-            try {
-                PendingEvent event = null;
-                while ((event = mQueue.peek()) != null) {
-                    event.run();
-                    mQueue.poll();
+        public void removeEvents(Subscriber subscriber) {
+            PendingEvent removed = null;
+            synchronized (this) {
+                if (mPendingEvents.remove(subscriber) != null) {
+                    // The frame holds at most one event per subscriber.
+                    for (PendingEvent event = mHead, prev = null; event != null; prev = event, event = event.next) {
+                        if (event.subscriber == subscriber) {
+                            if (prev == null) {
+                                mHead = event.next;
+                            } else {
+                                prev.next = event.next;
+                            }
+
+                            if (mTail == event) {
+                                mTail = prev;
+                            }
+
+                            event.next = null;
+                            removed = event;
+                            break;
+                        }
+                    }
                 }
-            } finally {
-                mState.set(IDLE);
             }
+
+            PendingEvent.cancelAll(removed);
+        }
+
+        /**
+         * Schedules this handler to run at the next frame boundary.
+         * The caller must hold this lock.
+         */
+        private void scheduleFrame() {
+            final long now = SystemClock.uptimeMillis();
+            mainHandler.postAtTime(this, (now / FRAME_MILLIS + 1) * FRAME_MILLIS);
         }
     }
 
@@ -664,61 +3287,74 @@ public final class EventBus {
      * Nested class ThreadHandler
      */
     private static final class ThreadHandler implements EventHandler, Callback {
-        private static final int MESSAGE_QUIT  = 0;
-        private static final int MESSAGE_EVENT = 1;
+        private static final int MESSAGE_QUIT = 0;
+        private static final long KEEP_ALIVE_MILLIS = 60000;
+
+        /**
+         * The handler of the handler thread and its pending queue, all
+         * guarded by this object. <tt>null</tt> if the thread has quit.
+         */
         private Handler mHandler;
+        private LooperQueue mQueue;
 
         @Override
-        public void handleEvent(int token, Subscriber subscriber, Object[] args, long delayMillis) {
+        public void handleEvent(int token, Subscriber subscriber, Object[] args, long value, int key, long delayMillis) {
             if (delayMillis > 0 || Looper.getMainLooper() == Looper.myLooper()) {
                 // If delayMillis > 0 or Posting thread is main thread
                 // Posts the event to the handler thread message queue.
-                postEvent(token, subscriber, args, delayMillis);
+                postEvent(token, subscriber, args, value, delayMillis);
             } else {
                 // Posting thread is not main thread, call event method
                 // directly.
-                subscriber.invoke(token, args);
+                invokeEvent(ThreadMode.HANDLER, token, subscriber, args, value);
+            }
+        }
+
+        @Override
+        public void removeEvents(Subscriber subscriber) {
+            final LooperQueue queue;
+            synchronized (this) {
+                queue = mQueue;
+            }
+
+            if (queue != null) {
+                queue.removeEvents(subscriber);
             }
         }
 
         @Override
         public boolean handleMessage(Message msg) {
-            switch (msg.what) {
-            case MESSAGE_QUIT:
+            if (msg.what == MESSAGE_QUIT) {
                 synchronized (this) {
                     if (mHandler != null) {
-                        mHandler.getLooper().quit();
-                        mHandler = null;
-                    }
-                }
-                break;
-
-            case MESSAGE_EVENT:
-                ((PendingEvent)msg.obj).run();
-                synchronized (this) {
-                    // Sends the delayed quit message, If the thread
-                    // is not quit and the message queue is empty.
-                    if (mHandler != null && !mHandler.hasMessages(MESSAGE_EVENT)) {
-                        mHandler.sendEmptyMessageDelayed(MESSAGE_QUIT, 60000);
+                        if (!mQueue.isEmpty()) {
+                            // Events are still pending, checks again later.
+                            mHandler.sendEmptyMessageDelayed(MESSAGE_QUIT, KEEP_ALIVE_MILLIS);
+                        } else {
+                            mHandler.getLooper().quit();
+                            mHandler = null;
+                            mQueue = null;
+                        }
                     }
                 }
-                break;
             }
 
             return true;
         }
 
-        private void postEvent(int token, Subscriber subscriber, Object[] args, long delayMillis) {
+        private void postEvent(int token, Subscriber subscriber, Object[] args, long value, long delayMillis) {
             synchronized (this) {
                 if (mHandler == null) {
                     final HandlerThread thread = new HandlerThread(threadName());
                     thread.start();
                     mHandler = new Handler(thread.getLooper(), this);
+                    mQueue = new LooperQueue(mHandler);
+
+                    // The quit message quits the thread once no event is pending.
+                    mHandler.sendEmptyMessageDelayed(MESSAGE_QUIT, KEEP_ALIVE_MILLIS);
                 }
 
-                // Removes the quit message, then send the event message.
-                mHandler.removeMessages(MESSAGE_QUIT);
-                mHandler.sendMessageDelayed(Message.obtain(mHandler, MESSAGE_EVENT, PendingEvent.obtain(token, subscriber, args)), delayMillis);
+                mQueue.post(PendingEvent.obtain(ThreadMode.HANDLER, token, subscriber, args, value), delayMillis);
             }
         }
     }
@@ -728,15 +3364,15 @@ public final class EventBus {
      */
     private static final class BackgoundHandler extends SequenceHandler {
         @Override
-        public void handleEvent(int token, Subscriber subscriber, Object[] args, long delayMillis) {
+        public void handleEvent(int token, Subscriber subscriber, Object[] args, long value, int key, long delayMillis) {
             if (Looper.getMainLooper() == Looper.myLooper()) {
                 // Posts the event to mQueue, if
                 // posting thread is main thread.
-                postEvent(PendingEvent.obtain(token, subscriber, args));
+                postEvent(PendingEvent.obtain(ThreadMode.BACKGROUND, token, subscriber, args, value));
             } else {
                 // Posting thread is not main thread,
                 // call event method directly.
-                subscriber.invoke(token, args);
+                invokeEvent(ThreadMode.BACKGROUND, token, subscriber, args, value);
             }
         }
     }
@@ -745,23 +3381,80 @@ public final class EventBus {
      * Nested class PendingEvent
      */
     private static final class PendingEvent implements Recyclable<PendingEvent>, Runnable {
+        public int token;
+        public long value;
+        public Object[] args;
         public Subscriber subscriber;
-        public final Object[] params;
+
+        /**
+         * The link of the pending queue which holds this event.
+         */
+        public PendingEvent next;
+
+        /**
+         * The value of the {@link EventBus#cancelClock} when this event was posted.
+         */
+        public long stamp;
+
+        /**
+         * The {@link EventMetrics.Recorder} and the post time (in nanoseconds)
+         * of this event, <tt>null</tt> if the metrics are disabled.
+         */
+        public EventMetrics.Recorder recorder;
+        public long postTime;
+
+        /**
+         * The {@link FlightRecorder} and the {@link ThreadMode} of this event,
+         * <tt>null</tt> if the traffic is not recorded.
+         */
+        public FlightRecorder journal;
+        public ThreadMode mode;
+
+        /**
+         * The rank and sequence to order this event in the {@link PriorityHandler},
+         * or the due time and sequence in the {@link LooperQueue}.
+         */
+        public long rank;
+        public long sequence;
+
+        /**
+         * The arguments reused to deliver the value of this event to the subscribers
+         * which do not implement {@link ValueEventReceiver}, so a queued value event
+         * allocates at most the boxed value.
+         */
+        private final Object[] valueArgs = new Object[1];
 
         /**
          * Retrieves a new <tt>PendingEvent</tt> object from the underlying pool.
+         * @param mode The {@link ThreadMode} that the event will be delivered.
          * @param token The token, passed earlier by {@link EventBus#post} or
          * {@link EventBus#postDelayed}.
          * @param subscriber The event subscriber.
          * @param args The event method arguments, passed earlier by {@link EventBus#post}
          * or {@link EventBus#postDelayed}.
+         * @param value The event value, passed earlier by {@link EventBus#postValue}.
          * @return A <tt>PendingEvent</tt> object.
          */
-        public static PendingEvent obtain(int token, Subscriber subscriber, Object[] args) {
+        public static PendingEvent obtain(ThreadMode mode, int token, Subscriber subscriber, Object[] args, long value) {
             final PendingEvent event = POOL.obtain();
-            event.params[0]  = token;
-            event.params[1]  = args;
+            event.token = token;
+            event.value = value;
+            event.args  = args;
             event.subscriber = subscriber;
+            event.stamp = cancelClock.get();
+
+            final EventMetrics eventMetrics = metrics;
+            if (eventMetrics != null) {
+                event.recorder = eventMetrics.onEnqueue(token, mode);
+            }
+
+            if ((event.journal = flightRecorder) != null) {
+                event.mode = mode;
+            }
+
+            if (event.recorder != null || event.journal != null) {
+                event.postTime = System.nanoTime();
+            }
 
             return event;
         }
@@ -769,45 +3462,112 @@ public final class EventBus {
         @Override
         public void run() {
             try {
-                subscriber.invoke(params);
+                if (!isCancelled()) {
+                    if (recorder == null && journal == null) {
+                        subscriber.invoke(token, args, value, valueArgs);
+                    } else {
+                        final long start = System.nanoTime();
+                        if (recorder != null) {
+                            recorder.onStart(start - postTime);
+                        }
+
+                        try {
+                            subscriber.invoke(token, args, value, valueArgs);
+                        } finally {
+                            final long end = System.nanoTime();
+                            if (recorder != null) {
+                                recorder.onExecuted(end - start);
+                            }
+
+                            if (journal != null) {
+                                journal.record(FlightRecorder.Type.DELIVER, token, mode, end, end - start, start - postTime);
+                            }
+                        }
+                    }
+                } else {
+                    recordCancel();
+                }
             } finally {
                 POOL.recycle(this);
             }
         }
 
-        @Override
-        public void onRecycled() {
-            params[0]  = null;
-            params[1]  = null;
-            subscriber = null;
+        /**
+         * Cancels the events linked by {@link #next} without delivering
+         * them, and recycles them to the pool.
+         * @param head The first event to cancel. May be <tt>null</tt>.
+         */
+        public static void cancelAll(PendingEvent head) {
+            while (head != null) {
+                final PendingEvent next = head.next;
+                head.next = null;
+                head.recordCancel();
+                POOL.recycle(head);
+                head = next;
+            }
         }
 
-        @Override
-        public boolean equals(Object other) {
-            return (other instanceof PendingEvent && hashCode() == other.hashCode());
+        private void recordCancel() {
+            if (recorder != null) {
+                recorder.onCancelled();
+            }
+
+            if (journal != null) {
+                final long now = System.nanoTime();
+                journal.record(FlightRecorder.Type.CANCEL, token, mode, now, 0, now - postTime);
+            }
+        }
+
+        /**
+         * Returns whether this event was cancelled by the {@link #subscriber} after posted.
+         */
+        public boolean isCancelled() {
+            return (stamp < subscriber.cancelStamp);
+        }
+
+        /**
+         * Discards this event without delivering it, and recycles it to the pool.
+         */
+        public void discard() {
+            if (recorder != null) {
+                recorder.onDropped();
+            }
+
+            if (journal != null) {
+                final long now = System.nanoTime();
+                journal.record(FlightRecorder.Type.DROP, token, mode, now, 0, now - postTime);
+            }
+
+            POOL.recycle(this);
         }
 
         @Override
-        public int hashCode() {
-            return (subscriber != null ? subscriber.hashCode() + params[0].hashCode() : 0);
+        public void onRecycled() {
+            args = null;
+            next = null;
+            mode = null;
+            journal    = null;
+            recorder   = null;
+            subscriber = null;
+            valueArgs[0] = null;
         }
 
         @Override
         public String toString() {
             return (subscriber != null ? new StringBuilder(64).append("[ token = ")
-                    .append(params[0]).append(", subscriber = ").append(subscriber).append(" ]").toString()
+                    .append(token).append(", subscriber = ").append(subscriber).append(" ]").toString()
                     : "[ token = null, subscriber = null ]");
         }
 
-        private PendingEvent() {
-            params = new Object[2];
-        }
-
+        /**
+         * The pool holds as many events as a burst queued by the handlers, so a
+         * steady stream of posts, even with a backlog, obtains no new event.
+         */
         private static final Pool<PendingEvent> POOL = Pools.newPool(new Factory<PendingEvent>() {
             @Override
             public PendingEvent newInstance() {
                 return new PendingEvent();
             }
-        }, 8);
+        }, 256);
     }
-}
+}
\ No newline at end of file
@@ -0,0 +1,338 @@
+package com.whs.soccer.concurrent;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.whs.soccer.concurrent.EventBus.ThreadMode;
+
+/**
+ * Class EventMetrics records the delivery statistics of the {@link EventBus}
+ * events per token and {@link ThreadMode}: the latency from the post to the
+ * start of the event method, the execution time of the event method, the
+ * depth of the pending queue when the event was queued and the number of
+ * dropped and cancelled events. The times and depths are recorded into
+ * power-of-2 histograms, with a few atomic increments per event.
+ * @author antoniochen
+ * @see EventBus#setMetricsEnabled(boolean)
+ * @see EventBus#getMetrics()
+ */
+public final class EventMetrics {
+    private final long mStartTime;
+    private final AtomicInteger[] mDepths;
+    private final ConcurrentHashMap<Long, Recorder> mRecorders;
+
+    /* package */ EventMetrics() {
+        final int count = ThreadMode.values().length;
+        mDepths = new AtomicInteger[count];
+        for (int i = 0; i < count; ++i) {
+            mDepths[i] = new AtomicInteger();
+        }
+
+        mStartTime = System.nanoTime();
+        mRecorders = new ConcurrentHashMap<Long, Recorder>();
+    }
+
+    /**
+     * Returns a snapshot of the statistics of all tokens, ordered by token and thread mode.
+     * @return A <tt>List</tt> of {@link Stats}.
+     */
+    public List<Stats> snapshot() {
+        final List<Stats> result = new ArrayList<Stats>(mRecorders.size());
+        for (Recorder recorder : mRecorders.values()) {
+            result.add(recorder.snapshot());
+        }
+
+        Collections.sort(result, new Comparator<Stats>() {
+            @Override
+            public int compare(Stats one, Stats another) {
+                return (one.token != another.token ? (one.token < another.token ? -1 : 1) : one.mode.compareTo(another.mode));
+            }
+        });
+
+        return result;
+    }
+
+    /**
+     * Returns the current number of pending events of the specified thread mode,
+     * which were queued since this <tt>EventMetrics</tt> was created.
+     * @param mode The {@link ThreadMode}.
+     * @return The number of pending events.
+     */
+    public int getQueueDepth(ThreadMode mode) {
+        return mDepths[mode.ordinal()].get();
+    }
+
+    /**
+     * Dumps the statistics of all tokens to the specified <em>writer</em>.
+     * The times are in microseconds.
+     * @param writer The <tt>PrintWriter</tt> to dump.
+     */
+    public void dump(PrintWriter writer) {
+        writer.append("EventMetrics [ uptime = ").append(Long.toString((System.nanoTime() - mStartTime) / 1000000)).println(" ms ]");
+        for (ThreadMode mode : ThreadMode.values()) {
+            final int depth = getQueueDepth(mode);
+            if (depth != 0) {
+                writer.append("  ").append(mode.name()).append(" queue depth = ").println(depth);
+            }
+        }
+
+        for (Stats stats : snapshot()) {
+            writer.append("  ").println(stats);
+        }
+
+        writer.flush();
+    }
+
+    /**
+     * Returns the {@link Recorder} of the specified <em>token</em> and thread <em>mode</em>.
+     */
+    /* package */ Recorder getRecorder(int token, ThreadMode mode) {
+        final Long key = ((long)token << 8) | mode.ordinal();
+        Recorder recorder = mRecorders.get(key);
+        if (recorder == null) {
+            final Recorder newRecorder = new Recorder(this, token, mode);
+            if ((recorder = mRecorders.putIfAbsent(key, newRecorder)) == null) {
+                recorder = newRecorder;
+            }
+        }
+
+        return recorder;
+    }
+
+    /**
+     * Called when an event of the specified <em>token</em> was queued.
+     * @return The {@link Recorder} to record the event.
+     */
+    /* package */ Recorder onEnqueue(int token, ThreadMode mode) {
+        final Recorder recorder = getRecorder(token, mode);
+        recorder.depth.record(mDepths[mode.ordinal()].incrementAndGet());
+        return recorder;
+    }
+
+    /**
+     * Class Stats is a snapshot of the statistics of a token and thread mode.
+     */
+    public static final class Stats {
+        /**
+         * The token of the events.
+         */
+        public final int token;
+
+        /**
+         * The {@link ThreadMode} of the events.
+         */
+        public final ThreadMode mode;
+
+        /**
+         * The number of events whose event method was invoked.
+         */
+        public final long executed;
+
+        /**
+         * The number of events discarded by the {@link EventBus.OverflowPolicy}.
+         */
+        public final long dropped;
+
+        /**
+         * The number of events withdrawn before they were delivered.
+         */
+        public final long cancelled;
+
+        /**
+         * The latency (in microseconds) from the post to the start of the event method.
+         */
+        public final Histogram latency;
+
+        /**
+         * The execution time (in microseconds) of the event method.
+         */
+        public final Histogram execution;
+
+        /**
+         * The depth of the pending queue when the events were queued.
+         */
+        public final Histogram depth;
+
+        /* package */ Stats(Recorder recorder) {
+            this.token = recorder.token;
+            this.mode  = recorder.mode;
+            this.executed  = recorder.executed.get();
+            this.dropped   = recorder.dropped.get();
+            this.cancelled = recorder.cancelled.get();
+            this.depth     = recorder.depth.snapshot();
+            this.latency   = recorder.latency.snapshot();
+            this.execution = recorder.execution.snapshot();
+        }
+
+        @Override
+        public String toString() {
+            return new StringBuilder(256).append("Stats [ token = ").append(token).append(", mode = ").append(mode)
+                    .append(", executed = ").append(executed).append(", dropped = ").append(dropped).append(", cancelled = ").append(cancelled)
+                    .append(", latency = ").append(latency).append(", execution = ").append(execution).append(", depth = ").append(depth).append(" ]").toString();
+        }
+    }
+
+    /**
+     * Class Histogram is a snapshot of a power-of-2 histogram. The bucket
+     * <tt>0</tt> counts the value <tt>0</tt>, the bucket <tt>i</tt> counts
+     * the values in the range [2<sup>i-1</sup>, 2<sup>i</sup>).
+     */
+    public static final class Histogram {
+        /**
+         * The number of recorded values.
+         */
+        public final long count;
+
+        /**
+         * The sum of the recorded values.
+         */
+        public final long sum;
+
+        /**
+         * The maximum recorded value.
+         */
+        public final long max;
+
+        private final long[] buckets;
+
+        /* package */ Histogram(long count, long sum, long max, long[] buckets) {
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+            this.buckets = buckets;
+        }
+
+        /**
+         * Returns the mean of the recorded values.
+         * @return The mean, or <tt>0</tt> if no value was recorded.
+         */
+        public long getMean() {
+            return (count > 0 ? sum / count : 0);
+        }
+
+        /**
+         * Returns the upper bound of the bucket containing the specified percentile.
+         * @param percentile The percentile, in the range [0, 100].
+         * @return The upper bound of the percentile, never greater than the {@link #max}.
+         */
+        public long getPercentile(double percentile) {
+            final long rank = (long)Math.ceil(count * percentile / 100);
+            long total = 0;
+            for (int i = 0; i < buckets.length; ++i) {
+                if ((total += buckets[i]) >= rank && total > 0) {
+                    return (i == 0 ? 0 : Math.min((1L << i) - 1, max));
+                }
+            }
+
+            return max;
+        }
+
+        /**
+         * Returns the number of values counted by the specified bucket.
+         * @param bucket The bucket index, in the range [0, 64).
+         * @return The number of values.
+         */
+        public long getBucketCount(int bucket) {
+            return buckets[bucket];
+        }
+
+        @Override
+        public String toString() {
+            return new StringBuilder(64).append("{ count = ").append(count).append(", mean = ").append(getMean()).append(", p50 = ").append(getPercentile(50))
+                    .append(", p99 = ").append(getPercentile(99)).append(", max = ").append(max).append(" }").toString();
+        }
+    }
+
+    /**
+     * Nested class Recorder
+     */
+    /* package */ static final class Recorder {
+        /* package */ final int token;
+        /* package */ final ThreadMode mode;
+        /* package */ final EventMetrics owner;
+        /* package */ final AtomicLong executed  = new AtomicLong();
+        /* package */ final AtomicLong dropped   = new AtomicLong();
+        /* package */ final AtomicLong cancelled = new AtomicLong();
+        /* package */ final HistogramRecorder depth = new HistogramRecorder();
+        /* package */ final HistogramRecorder latency = new HistogramRecorder();
+        /* package */ final HistogramRecorder execution = new HistogramRecorder();
+
+        /* package */ Recorder(EventMetrics owner, int token, ThreadMode mode) {
+            this.owner = owner;
+            this.token = token;
+            this.mode  = mode;
+        }
+
+        /**
+         * Called when a queued event was dequeued to run.
+         * @param latencyNanos The time (in nanoseconds) from the post to now.
+         */
+        /* package */ void onStart(long latencyNanos) {
+            owner.mDepths[mode.ordinal()].decrementAndGet();
+            latency.record(latencyNanos / 1000);
+        }
+
+        /**
+         * Called when an event method returned.
+         * @param executionNanos The execution time (in nanoseconds) of the event method.
+         */
+        /* package */ void onExecuted(long executionNanos) {
+            executed.incrementAndGet();
+            execution.record(executionNanos / 1000);
+        }
+
+        /* package */ void onDropped() {
+            owner.mDepths[mode.ordinal()].decrementAndGet();
+            dropped.incrementAndGet();
+        }
+
+        /* package */ void onCancelled() {
+            owner.mDepths[mode.ordinal()].decrementAndGet();
+            cancelled.incrementAndGet();
+        }
+
+        /* package */ Stats snapshot() {
+            return new Stats(this);
+        }
+    }
+
+    /**
+     * Nested class HistogramRecorder
+     */
+    /* package */ static final class HistogramRecorder {
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong sum = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+        private final AtomicLongArray buckets = new AtomicLongArray(64);
+
+        /* package */ void record(long value) {
+            if (value < 0) {
+                value = 0;
+            }
+
+            buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(value));
+            count.incrementAndGet();
+            sum.addAndGet(value);
+
+            long current;
+            while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            }
+        }
+
+        /* package */ Histogram snapshot() {
+            final long[] counts = new long[buckets.length()];
+            for (int i = 0; i < counts.length; ++i) {
+                counts[i] = buckets.get(i);
+            }
+
+            return new Histogram(count.get(), sum.get(), max.get(), counts);
+        }
+    }
+}
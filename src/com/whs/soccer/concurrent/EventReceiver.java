@@ -0,0 +1,22 @@
+package com.whs.soccer.concurrent;
+
+/**
+ * This interface may be implemented by an event subscriber to receive events
+ * from {@link EventBus} without reflection. When a subscriber implementing this
+ * interface is registered without an explicit event method name, <tt>EventBus</tt>
+ * binds it once at register time and calls {@link #onReceiveEvent(int, Object[])}
+ * directly, instead of looking up and invoking the "onEvent" method reflectively.
+ * @author antoniochen
+ * @see EventBus#register(Object)
+ * @see EventBus#register(int, Object)
+ */
+public interface EventReceiver {
+    /**
+     * Callback method to be invoked when an event was delivered to this receiver.
+     * @param token The token, passed earlier by {@link EventBus#post} or
+     * {@link EventBus#postDelayed}.
+     * @param args The event method arguments, passed earlier by {@link EventBus#post}
+     * or {@link EventBus#postDelayed}. May be <tt>null</tt>.
+     */
+    void onReceiveEvent(int token, Object[] args);
+}
@@ -0,0 +1,368 @@
+package com.whs.soccer.concurrent;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.whs.soccer.concurrent.EventBus.ThreadMode;
+
+/**
+ * Class FlightRecorder is a journal of the {@link EventBus} traffic. It appends a
+ * fixed-size binary record per post, delivery, dropped and cancelled event to a
+ * ring buffer, so it always holds the most recent events. Appending a record is
+ * a clock read, an atomic increment and a few absolute writes, without locking
+ * or allocation.
+ * <p>The ring buffer can be memory-mapped to a file, then the records survive
+ * a crash of the process, and the file can be decoded by {@link #decode(File)}
+ * on the next launch, before a new <tt>FlightRecorder</tt> reuses it. The file
+ * is also decoded offline by <tt>java com.whs.soccer.concurrent.FlightRecorder
+ * &lt;file&gt;</tt>.</p>
+ * <p>A record being written while the buffer is dumped, or overwritten by a
+ * writer which has lapped the ring, may be torn.</p>
+ * @author antoniochen
+ * @see EventBus#setFlightRecorder(FlightRecorder)
+ */
+public final class FlightRecorder {
+    private static final int MAGIC = 0x45424652;    // 'EBFR'
+    private static final int VERSION = 2;
+
+    /**
+     * The header: magic, version, record size, capacity,
+     * start wall time (in milliseconds), padded to 32 bytes.
+     */
+    private static final int HEADER_SIZE = 32;
+
+    /**
+     * The record: sequence + 1 as a long (0 if empty), type, thread mode,
+     * reserved, thread id, time since start (in nanoseconds), token, duration
+     * and latency (in microseconds), reserved.
+     */
+    private static final int RECORD_SIZE = 40;
+
+    private final int mMask;
+    private final long mStartTime;
+    private final ByteBuffer mBuffer;
+    private final AtomicLong mSequence;
+
+    /**
+     * Constructor
+     * <p>Creates a new <tt>FlightRecorder</tt> in memory.</p>
+     * @param capacity The number of records, rounded up to a power of 2.
+     */
+    public FlightRecorder(int capacity) {
+        this(ByteBuffer.allocateDirect(HEADER_SIZE + roundUp(capacity) * RECORD_SIZE));
+    }
+
+    /**
+     * Constructor
+     * <p>Creates a new <tt>FlightRecorder</tt> memory-mapped to the specified
+     * <em>file</em>. The previous content of the <em>file</em> is discarded.</p>
+     * @param file The file to map.
+     * @param capacity The number of records, rounded up to a power of 2.
+     * @throws IOException if the <em>file</em> couldn't be mapped.
+     * @see #decode(File)
+     */
+    public FlightRecorder(File file, int capacity) throws IOException {
+        this(map(file, HEADER_SIZE + roundUp(capacity) * RECORD_SIZE));
+    }
+
+    private FlightRecorder(ByteBuffer buffer) {
+        mBuffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+        mMask = (buffer.capacity() - HEADER_SIZE) / RECORD_SIZE - 1;
+        mSequence = new AtomicLong();
+        mStartTime = System.nanoTime();
+
+        // Clears the records of a reused file.
+        for (int offset = HEADER_SIZE; offset < buffer.capacity(); offset += RECORD_SIZE) {
+            buffer.putLong(offset, 0);
+        }
+
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, RECORD_SIZE);
+        buffer.putInt(12, mMask + 1);
+        buffer.putLong(16, System.currentTimeMillis());
+    }
+
+    /**
+     * Returns the maximum number of records this recorder holds.
+     * @return The capacity of this recorder.
+     */
+    public int getCapacity() {
+        return mMask + 1;
+    }
+
+    /**
+     * Returns the number of records appended since this recorder was created,
+     * including the records which have been overwritten.
+     * @return The number of records.
+     */
+    public long getRecordCount() {
+        return mSequence.get();
+    }
+
+    /**
+     * Writes the binary content of this recorder to the specified <em>file</em>.
+     * @param file The file to write.
+     * @throws IOException if an error occurs while writing to the <em>file</em>.
+     * @see #decode(File)
+     */
+    public void dump(File file) throws IOException {
+        final ByteBuffer buffer = mBuffer.duplicate();
+        buffer.clear();
+
+        final FileOutputStream out = new FileOutputStream(file);
+        try {
+            final FileChannel channel = out.getChannel();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Decodes the records of this recorder and dumps them to the specified <em>writer</em>.
+     * @param writer The <tt>PrintWriter</tt> to dump.
+     */
+    public void dump(PrintWriter writer) {
+        final ByteBuffer buffer = mBuffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        dump(writer, buffer.getLong(16), decode(buffer));
+    }
+
+    /**
+     * Decodes the records of a file written by {@link #dump(File)}, or
+     * mapped by a <tt>FlightRecorder</tt>.
+     * @param file The file to decode.
+     * @return A <tt>List</tt> of {@link Record}s, ordered by time.
+     * @throws IOException if the <em>file</em> couldn't be read or is not a
+     * <tt>FlightRecorder</tt> file.
+     */
+    public static List<Record> decode(File file) throws IOException {
+        return decode(read(file));
+    }
+
+    /**
+     * Decodes a <tt>FlightRecorder</tt> file and prints its records to the standard output.
+     * @param args The path of the file.
+     * @throws IOException if the file couldn't be decoded.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: FlightRecorder <file>");
+            return;
+        }
+
+        final ByteBuffer buffer = read(new File(args[0]));
+        dump(new PrintWriter(System.out), buffer.getLong(16), decode(buffer));
+    }
+
+    /**
+     * Appends a record to this recorder.
+     * @param type The {@link Type} of the record.
+     * @param token The token of the event.
+     * @param mode The {@link ThreadMode} of the event.
+     * @param time The <tt>System.nanoTime()</tt> of the record, passed by the caller
+     * to share the clock read with the duration.
+     * @param durationNanos The execution time (in nanoseconds) of the event method.
+     * @param latencyNanos The time (in nanoseconds) from the post to the delivery.
+     */
+    /* package */ void record(Type type, int token, ThreadMode mode, long time, long durationNanos, long latencyNanos) {
+        final long sequence = mSequence.getAndIncrement();
+        final int offset = HEADER_SIZE + (int)(sequence & mMask) * RECORD_SIZE;
+        final ByteBuffer buffer = mBuffer;
+
+        // Marks the record empty while it is written, then publishes the sequence.
+        // The sequence is a long, so the marker never wraps around to empty.
+        buffer.putLong(offset, 0);
+        buffer.put(offset + 8, (byte)type.ordinal());
+        buffer.put(offset + 9, (byte)(mode != null ? mode.ordinal() : -1));
+        buffer.putInt(offset + 12, (int)Thread.currentThread().getId());
+        buffer.putLong(offset + 16, time - mStartTime);
+        buffer.putInt(offset + 24, token);
+        buffer.putInt(offset + 28, toMicros(durationNanos));
+        buffer.putInt(offset + 32, toMicros(latencyNanos));
+        buffer.putLong(offset, sequence + 1);
+    }
+
+    private static List<Record> decode(ByteBuffer buffer) {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        final int capacity = buffer.getInt(12);
+        final List<Record> result = new ArrayList<Record>(capacity);
+        for (int i = 0, offset = HEADER_SIZE; i < capacity; ++i, offset += RECORD_SIZE) {
+            final long sequence = buffer.getLong(offset);
+            if (sequence != 0) {
+                result.add(new Record(buffer, offset, sequence));
+            }
+        }
+
+        Collections.sort(result, new Comparator<Record>() {
+            @Override
+            public int compare(Record one, Record another) {
+                if (one.time != another.time) {
+                    return (one.time < another.time ? -1 : 1);
+                }
+
+                return (one.sequence < another.sequence ? -1 : (one.sequence > another.sequence ? 1 : 0));
+            }
+        });
+
+        return result;
+    }
+
+    private static void dump(PrintWriter writer, long startTime, List<Record> records) {
+        writer.append("FlightRecorder [ start = ").append(Long.toString(startTime)).append(", records = ").append(Integer.toString(records.size())).println(" ]");
+        for (Record record : records) {
+            writer.append("  ").println(record);
+        }
+
+        writer.flush();
+    }
+
+    private static ByteBuffer read(File file) throws IOException {
+        final FileInputStream in = new FileInputStream(file);
+        try {
+            final FileChannel channel = in.getChannel();
+            final ByteBuffer buffer = ByteBuffer.allocate((int)channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+            while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+            }
+
+            if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || buffer.getInt(8) != RECORD_SIZE
+                    || buffer.capacity() < HEADER_SIZE + (long)buffer.getInt(12) * RECORD_SIZE) {
+                throw new IOException("Not a FlightRecorder file - " + file);
+            }
+
+            return buffer;
+        } finally {
+            in.close();
+        }
+    }
+
+    private static ByteBuffer map(File file, int size) throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            // The mapping stays valid after the file is closed.
+            raf.setLength(size);
+            return raf.getChannel().map(MapMode.READ_WRITE, 0, size);
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static int roundUp(int capacity) {
+        if (capacity <= 0 || capacity > (1 << 24)) {
+            throw new IllegalArgumentException("The capacity must be in the range (0, 2^24]");
+        }
+
+        return (capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1);
+    }
+
+    private static int toMicros(long nanos) {
+        return (int)Math.min(nanos / 1000, Integer.MAX_VALUE);
+    }
+
+    /**
+     * The type of a {@link Record}.
+     */
+    public static enum Type {
+        /**
+         * An event was posted.
+         */
+        POST,
+
+        /**
+         * An event was delivered.
+         */
+        DELIVER,
+
+        /**
+         * A pending event was discarded by the {@link EventBus.OverflowPolicy}.
+         */
+        DROP,
+
+        /**
+         * A pending event was withdrawn before it was delivered.
+         */
+        CANCEL
+    }
+
+    /**
+     * Class Record is a decoded record of a <tt>FlightRecorder</tt>.
+     */
+    public static final class Record {
+        /**
+         * The sequence of this record.
+         */
+        public final long sequence;
+
+        /**
+         * The {@link Type} of this record.
+         */
+        public final Type type;
+
+        /**
+         * The {@link ThreadMode} of the event, <tt>null</tt> if unknown.
+         */
+        public final ThreadMode mode;
+
+        /**
+         * The time (in nanoseconds) since the recorder was created.
+         */
+        public final long time;
+
+        /**
+         * The token of the event.
+         */
+        public final int token;
+
+        /**
+         * The id of the thread which appended this record.
+         */
+        public final int threadId;
+
+        /**
+         * The execution time (in microseconds) of the event method, <tt>0</tt> if not delivered.
+         */
+        public final int duration;
+
+        /**
+         * The latency (in microseconds) from the post to the delivery, <tt>0</tt> if unknown.
+         */
+        public final int latency;
+
+        /* package */ Record(ByteBuffer buffer, int offset, long sequence) {
+            final Type[] types = Type.values();
+            final ThreadMode[] modes = ThreadMode.values();
+            final int type = buffer.get(offset + 8), mode = buffer.get(offset + 9);
+
+            this.sequence = sequence - 1;
+            this.type = (type >= 0 && type < types.length ? types[type] : null);
+            this.mode = (mode >= 0 && mode < modes.length ? modes[mode] : null);
+            this.threadId = buffer.getInt(offset + 12);
+            this.time = buffer.getLong(offset + 16);
+            this.token = buffer.getInt(offset + 24);
+            this.duration = buffer.getInt(offset + 28);
+            this.latency  = buffer.getInt(offset + 32);
+        }
+
+        @Override
+        public String toString() {
+            return new StringBuilder(128).append("Record [ time = ").append(time / 1000).append(" us, type = ").append(type).append(", token = ").append(token)
+                    .append(", mode = ").append(mode).append(", thread = ").append(threadId).append(", duration = ").append(duration)
+                    .append(" us, latency = ").append(latency).append(" us ]").toString();
+        }
+    }
+}
@@ -0,0 +1,674 @@
+package com.whs.soccer.concurrent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Class Promise is the pending result of an asynchronous computation, which
+ * can be chained with dependent steps. A step runs when its source completes,
+ * on the thread completing the source or on the specified {@link Executor},
+ * such as a {@link ThreadPool} or {@link #MAIN_THREAD}. No thread is parked
+ * while a step is waiting for its source.
+ * <p>A step is skipped if its source fails or is cancelled, the dependent
+ * promise completes with the same exception. Cancelling a promise cancels
+ * its sources which have no other pending dependents, so cancelling the last
+ * step of a chain cancels the whole chain. A promise cancelled before its
+ * task has started removes the task from the pending queue of the
+ * {@link ThreadPool}. A running task is never interrupted.</p>
+ * <p>The blocking {@link #get()} methods are provided for the background
+ * threads only, never call them on the main thread.</p>
+ * @author antoniochen
+ * @see #supply(Executor, Callable)
+ */
+public final class Promise<Result> implements Future<Result> {
+    private static final int PENDING   = 0;
+    private static final int SUCCEEDED = 1;
+    private static final int FAILED    = 2;
+    private static final int CANCELLED = 3;
+
+    /**
+     * The {@link Executor} which runs the steps on the main thread. A step
+     * completed on the main thread runs immediately.
+     * @see EventBus#runOnUIThread(Runnable)
+     */
+    public static final Executor MAIN_THREAD = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            EventBus.runOnUIThread(command);
+        }
+    };
+
+    /**
+     * The fields are guarded by this object.
+     */
+    private int mState;
+    private Result mResult;
+    private Throwable mError;
+    private int mDependents;
+    private Runnable mOnCancel;
+    private ArrayList<Runnable> mListeners;
+    private ArrayList<Promise<?>> mSources;
+
+    /**
+     * Constructor
+     * <P>Creates a new pending <tt>Promise</tt>, completed by {@link #complete(Object)}
+     * or {@link #fail(Throwable)}.</P>
+     */
+    public Promise() {
+    }
+
+    /**
+     * Returns a new <tt>Promise</tt> completed by the result of the <em>callable</em>,
+     * which is run on the specified <em>executor</em>.
+     * @param executor The <tt>Executor</tt> to run the <em>callable</em>, such as a
+     * {@link ThreadPool}.
+     * @param callable The <tt>Callable</tt> to run.
+     * @return The new <tt>Promise</tt>.
+     */
+    public static <Result> Promise<Result> supply(final Executor executor, final Callable<? extends Result> callable) {
+        if (callable == null) {
+            throw new NullPointerException("The callable == null");
+        }
+
+        final Promise<Result> promise = new Promise<Result>();
+        final Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                if (!promise.isDone()) {
+                    try {
+                        promise.complete(callable.call());
+                    } catch (Throwable e) {
+                        promise.fail(e);
+                    }
+                }
+            }
+        };
+
+        if (executor instanceof ThreadPool) {
+            promise.mOnCancel = new Runnable() {
+                @Override
+                public void run() {
+                    ((ThreadPool)executor).remove(task);
+                }
+            };
+        }
+
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            promise.fail(e);
+        }
+
+        return promise;
+    }
+
+    /**
+     * Returns a new <tt>Promise</tt> which has already succeeded with the specified <em>result</em>.
+     * @param result The result. May be <tt>null</tt>.
+     * @return The new <tt>Promise</tt>.
+     */
+    public static <Result> Promise<Result> succeeded(Result result) {
+        final Promise<Result> promise = new Promise<Result>();
+        promise.complete(result);
+        return promise;
+    }
+
+    /**
+     * Returns a new <tt>Promise</tt> which has already failed with the specified <em>error</em>.
+     * @param error The exception.
+     * @return The new <tt>Promise</tt>.
+     */
+    public static <Result> Promise<Result> failed(Throwable error) {
+        final Promise<Result> promise = new Promise<Result>();
+        promise.fail(error);
+        return promise;
+    }
+
+    /**
+     * Returns a new <tt>Promise</tt> which succeeds with the results of all specified
+     * <em>promises</em>, in the same order. It fails as soon as one of the <em>promises</em>
+     * fails or is cancelled.
+     * @param promises The collection of the <tt>Promise</tt>s.
+     * @return The new <tt>Promise</tt>.
+     * @see #anyOf(Collection)
+     */
+    public static <Result> Promise<List<Result>> allOf(Collection<? extends Promise<? extends Result>> promises) {
+        final Promise<List<Result>> all = new Promise<List<Result>>();
+        final int size = promises.size();
+        if (size == 0) {
+            all.complete(new ArrayList<Result>(0));
+            return all;
+        }
+
+        final Object[] results = new Object[size];
+        final AtomicInteger remaining = new AtomicInteger(size);
+        int index = 0;
+        for (final Promise<? extends Result> promise : promises) {
+            final int position = index++;
+            all.addSource(promise);
+            promise.addListener(new Runnable() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public void run() {
+                    if (promise.mState != SUCCEEDED) {
+                        all.complete(promise.mState, null, promise.mError);
+                    } else {
+                        results[position] = promise.mResult;
+                        if (remaining.decrementAndGet() == 0) {
+                            all.complete((List<Result>)Arrays.asList(results));
+                        }
+                    }
+                }
+            });
+        }
+
+        return all;
+    }
+
+    /**
+     * Returns a new <tt>Promise</tt> which completes as the first completed of the specified
+     * <em>promises</em>. The other <em>promises</em> are then cancelled, unless they have
+     * other pending dependents.
+     * @param promises The collection of the <tt>Promise</tt>s, must not be empty.
+     * @return The new <tt>Promise</tt>.
+     * @see #allOf(Collection)
+     */
+    public static <Result> Promise<Result> anyOf(Collection<? extends Promise<? extends Result>> promises) {
+        if (promises.isEmpty()) {
+            throw new IllegalArgumentException("The promises must not be empty");
+        }
+
+        final Promise<Result> any = new Promise<Result>();
+        for (final Promise<? extends Result> promise : promises) {
+            any.addSource(promise);
+            promise.addListener(new Runnable() {
+                @Override
+                public void run() {
+                    any.complete(promise.mState, promise.mResult, promise.mError);
+                }
+            });
+        }
+
+        return any;
+    }
+
+    /**
+     * Completes this promise with the specified <em>result</em>, if it is pending.
+     * @param result The result. May be <tt>null</tt>.
+     * @return <tt>true</tt> if this promise was pending and has been completed,
+     * <tt>false</tt> otherwise.
+     * @see #fail(Throwable)
+     */
+    public boolean complete(Result result) {
+        return complete(SUCCEEDED, result, null);
+    }
+
+    /**
+     * Completes this promise with the specified <em>error</em>, if it is pending.
+     * @param error The exception.
+     * @return <tt>true</tt> if this promise was pending and has been completed,
+     * <tt>false</tt> otherwise.
+     * @see #complete(Object)
+     */
+    public boolean fail(Throwable error) {
+        if (error == null) {
+            throw new NullPointerException("The error == null");
+        }
+
+        return complete(FAILED, null, error);
+    }
+
+    /**
+     * Returns a new <tt>Promise</tt> completed by the result of the <em>function</em>,
+     * which is applied to the result of this promise on the completing thread.
+     * @param function The {@link Function} to apply.
+     * @return The new <tt>Promise</tt>.
+     * @see #thenApply(Executor, Function)
+     */
+    public <Next> Promise<Next> thenApply(Function<? super Result, ? extends Next> function) {
+        return thenApply(null, function);
+    }
+
+    /**
+     * Returns a new <tt>Promise</tt> completed by the result of the <em>function</em>,
+     * which is applied to the result of this promise on the specified <em>executor</em>.
+     * @param executor The <tt>Executor</tt> to run the <em>function</em>, or <tt>null</tt>
+     * to run it on the completing thread.
+     * @param function The {@link Function} to apply.
+     * @return The new <tt>Promise</tt>.
+     * @see #thenApply(Function)
+     */
+    public <Next> Promise<Next> thenApply(Executor executor, final Function<? super Result, ? extends Next> function) {
+        return then(executor, new Step<Result, Next>() {
+            @Override
+            public void run(Result result, Promise<Next> next) throws Exception {
+                next.complete(function.apply(result));
+            }
+        });
+    }
+
+    /**
+     * Returns a new <tt>Promise</tt> completed as the promise returned by the <em>function</em>,
+     * which is applied to the result of this promise on the completing thread.
+     * @param function The {@link AsyncFunction} to apply.
+     * @return The new <tt>Promise</tt>.
+     * @see #thenCompose(Executor, AsyncFunction)
+     */
+    public <Next> Promise<Next> thenCompose(AsyncFunction<? super Result, Next> function) {
+        return thenCompose(null, function);
+    }
+
+    /**
+     * Returns a new <tt>Promise</tt> completed as the promise returned by the <em>function</em>,
+     * which is applied to the result of this promise on the specified <em>executor</em>.
+     * @param executor The <tt>Executor</tt> to run the <em>function</em>, or <tt>null</tt>
+     * to run it on the completing thread.
+     * @param function The {@link AsyncFunction} to apply.
+     * @return The new <tt>Promise</tt>.
+     * @see #thenCompose(AsyncFunction)
+     */
+    public <Next> Promise<Next> thenCompose(Executor executor, final AsyncFunction<? super Result, Next> function) {
+        return then(executor, new Step<Result, Next>() {
+            @Override
+            public void run(Result result, final Promise<Next> next) throws Exception {
+                final Promise<Next> promise = function.apply(result);
+                if (promise == null) {
+                    throw new NullPointerException("The function returned null");
+                }
+
+                next.addSource(promise);
+                promise.addListener(new Runnable() {
+                    @Override
+                    public void run() {
+                        next.complete(promise.mState, promise.mResult, promise.mError);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Returns a new <tt>Promise</tt> which succeeds with <tt>null</tt> after the <em>consumer</em>
+     * has accepted the result of this promise on the completing thread.
+     * @param consumer The {@link Consumer} to run.
+     * @return The new <tt>Promise</tt>.
+     * @see #thenAccept(Executor, Consumer)
+     */
+    public Promise<Void> thenAccept(Consumer<? super Result> consumer) {
+        return thenAccept(null, consumer);
+    }
+
+    /**
+     * Returns a new <tt>Promise</tt> which succeeds with <tt>null</tt> after the <em>consumer</em>
+     * has accepted the result of this promise on the specified <em>executor</em>.
+     * @param executor The <tt>Executor</tt> to run the <em>consumer</em>, or <tt>null</tt>
+     * to run it on the completing thread.
+     * @param consumer The {@link Consumer} to run.
+     * @return The new <tt>Promise</tt>.
+     * @see #thenAccept(Consumer)
+     */
+    public Promise<Void> thenAccept(Executor executor, final Consumer<? super Result> consumer) {
+        return then(executor, new Step<Result, Void>() {
+            @Override
+            public void run(Result result, Promise<Void> next) throws Exception {
+                consumer.accept(result);
+                next.complete(null);
+            }
+        });
+    }
+
+    /**
+     * Returns a new <tt>Promise</tt> which completes as this promise after the <em>callback</em>
+     * has been invoked with the outcome of this promise on the specified <em>executor</em>.
+     * Unlike the other steps, the <em>callback</em> is also invoked if this promise fails or
+     * is cancelled.
+     * @param executor The <tt>Executor</tt> to run the <em>callback</em>, or <tt>null</tt>
+     * to run it on the completing thread.
+     * @param callback The {@link Callback} to invoke.
+     * @return The new <tt>Promise</tt>.
+     */
+    public Promise<Result> whenComplete(final Executor executor, final Callback<? super Result> callback) {
+        final Promise<Result> next = new Promise<Result>();
+        next.addSource(this);
+        addListener(new Runnable() {
+            @Override
+            public void run() {
+                execute(executor, next, new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            callback.onComplete(mResult, mError);
+                            next.complete(mState, mResult, mError);
+                        } catch (Throwable e) {
+                            next.fail(e);
+                        }
+                    }
+                });
+            }
+        });
+
+        return next;
+    }
+
+    /**
+     * Returns a new <tt>Promise</tt> which completes as this promise, or fails with a
+     * <tt>TimeoutException</tt> if this promise has not completed within the specified
+     * <em>timeoutMillis</em>. This promise is then cancelled, unless it has other pending
+     * dependents.
+     * @param timeoutMillis The timeout (in milliseconds).
+     * @return The new <tt>Promise</tt>.
+     */
+    public Promise<Result> withTimeout(final long timeoutMillis) {
+        final Promise<Result> next = new Promise<Result>();
+        next.addSource(this);
+        final TimerWheel.Timeout timeout = TimerHolder.timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                next.complete(FAILED, null, new TimeoutException("The promise timed out - timeoutMillis = " + timeoutMillis));
+            }
+        }, timeoutMillis);
+
+        next.addListener(new Runnable() {
+            @Override
+            public void run() {
+                timeout.cancel();
+            }
+        });
+
+        addListener(new Runnable() {
+            @Override
+            public void run() {
+                next.complete(mState, mResult, mError);
+            }
+        });
+
+        return next;
+    }
+
+    /**
+     * Cancels this promise. The sources of this promise which have no other pending
+     * dependents are cancelled, and the dependents of this promise are cancelled.
+     * @param mayInterruptIfRunning Ignored, a running task is never interrupted.
+     * @return <tt>true</tt> if this promise was pending and has been cancelled,
+     * <tt>false</tt> otherwise.
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return complete(CANCELLED, null, new CancellationException("The promise was cancelled"));
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return (mState == CANCELLED);
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return (mState != PENDING);
+    }
+
+    @Override
+    public synchronized Result get() throws InterruptedException, ExecutionException {
+        while (mState == PENDING) {
+            wait();
+        }
+
+        return getResult();
+    }
+
+    @Override
+    public synchronized Result get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (mState == PENDING) {
+            final long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                throw new TimeoutException();
+            }
+
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+
+        return getResult();
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder(48).append("Promise [ state = ").append(mState).append(" ]").toString();
+    }
+
+    private Result getResult() throws ExecutionException {
+        switch (mState) {
+        case CANCELLED:
+            throw (CancellationException)mError;
+
+        case FAILED:
+            throw new ExecutionException(mError);
+
+        default:
+            return mResult;
+        }
+    }
+
+    private <Next> Promise<Next> then(final Executor executor, final Step<Result, Next> step) {
+        final Promise<Next> next = new Promise<Next>();
+        next.addSource(this);
+        addListener(new Runnable() {
+            @Override
+            public void run() {
+                if (mState != SUCCEEDED) {
+                    next.complete(mState, null, mError);
+                    return;
+                }
+
+                execute(executor, next, new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!next.isDone()) {
+                            try {
+                                step.run(mResult, next);
+                            } catch (Throwable e) {
+                                next.fail(e);
+                            }
+                        }
+                    }
+                });
+            }
+        });
+
+        return next;
+    }
+
+    /**
+     * Runs the <em>task</em> on the <em>executor</em>, or fails the <em>next</em>
+     * if the <em>executor</em> rejects it.
+     */
+    private static void execute(Executor executor, Promise<?> next, Runnable task) {
+        if (executor == null) {
+            task.run();
+        } else {
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                next.fail(e);
+            }
+        }
+    }
+
+    private boolean complete(int state, Result result, Throwable error) {
+        final ArrayList<Runnable> listeners;
+        final ArrayList<Promise<?>> sources;
+        final Runnable onCancel;
+        synchronized (this) {
+            if (mState != PENDING) {
+                return false;
+            }
+
+            mState  = state;
+            mError  = error;
+            mResult = result;
+            onCancel  = mOnCancel;
+            sources   = mSources;
+            listeners = mListeners;
+            mOnCancel  = null;
+            mSources   = null;
+            mListeners = null;
+            notifyAll();
+        }
+
+        if (onCancel != null && state == CANCELLED) {
+            onCancel.run();
+        }
+
+        if (sources != null) {
+            // This promise no longer depends on its sources.
+            for (int i = 0, size = sources.size(); i < size; ++i) {
+                sources.get(i).release();
+            }
+        }
+
+        if (listeners != null) {
+            for (int i = 0, size = listeners.size(); i < size; ++i) {
+                listeners.get(i).run();
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Runs the <em>listener</em> when this promise completes, or immediately
+     * if this promise has already completed.
+     */
+    private void addListener(Runnable listener) {
+        synchronized (this) {
+            if (mState == PENDING) {
+                if (mListeners == null) {
+                    mListeners = new ArrayList<Runnable>(2);
+                }
+
+                mListeners.add(listener);
+                return;
+            }
+        }
+
+        listener.run();
+    }
+
+    /**
+     * Makes this promise a pending dependent of the <em>source</em>.
+     */
+    private void addSource(Promise<?> source) {
+        source.retain();
+        synchronized (this) {
+            if (mState == PENDING) {
+                if (mSources == null) {
+                    mSources = new ArrayList<Promise<?>>(1);
+                }
+
+                mSources.add(source);
+                return;
+            }
+        }
+
+        source.release();
+    }
+
+    private synchronized void retain() {
+        ++mDependents;
+    }
+
+    /**
+     * Called when a dependent of this promise completes, cancels this
+     * promise if it has no other pending dependents.
+     */
+    private void release() {
+        synchronized (this) {
+            if (--mDependents > 0 || mState != PENDING) {
+                return;
+            }
+        }
+
+        cancel(false);
+    }
+
+    /**
+     * Used for transforming the result of a promise.
+     * @see Promise#thenApply(Executor, Function)
+     */
+    public static interface Function<Param, Result> {
+        /**
+         * Applies this function to the specified <em>param</em>.
+         * @param param The result of the source promise.
+         * @return The result of the dependent promise.
+         * @throws Exception if the dependent promise should fail.
+         */
+        Result apply(Param param) throws Exception;
+    }
+
+    /**
+     * Used for chaining an asynchronous computation after a promise.
+     * @see Promise#thenCompose(Executor, AsyncFunction)
+     */
+    public static interface AsyncFunction<Param, Result> {
+        /**
+         * Applies this function to the specified <em>param</em>.
+         * @param param The result of the source promise.
+         * @return The <tt>Promise</tt> which completes the dependent promise, never <tt>null</tt>.
+         * @throws Exception if the dependent promise should fail.
+         */
+        Promise<Result> apply(Param param) throws Exception;
+    }
+
+    /**
+     * Used for consuming the result of a promise.
+     * @see Promise#thenAccept(Executor, Consumer)
+     */
+    public static interface Consumer<Param> {
+        /**
+         * Accepts the specified <em>param</em>.
+         * @param param The result of the source promise.
+         * @throws Exception if the dependent promise should fail.
+         */
+        void accept(Param param) throws Exception;
+    }
+
+    /**
+     * Callback interface to be invoked when a promise completes.
+     * @see Promise#whenComplete(Executor, Callback)
+     */
+    public static interface Callback<Result> {
+        /**
+         * Callback method to be invoked when a promise completes.
+         * @param result The result of the promise. May be <tt>null</tt>.
+         * @param error <tt>null</tt> if the promise succeeded. A <tt>CancellationException</tt>
+         * if the promise was cancelled, otherwise the exception which failed the promise.
+         * @throws Exception if the dependent promise should fail.
+         */
+        void onComplete(Result result, Throwable error) throws Exception;
+    }
+
+    /**
+     * Nested interface Step
+     */
+    private static interface Step<Result, Next> {
+        void run(Result result, Promise<Next> next) throws Exception;
+    }
+
+    /**
+     * Nested class TimerHolder
+     */
+    private static final class TimerHolder {
+        /* package */ static final TimerWheel timer = new TimerWheel(10, 512);
+    }
+}
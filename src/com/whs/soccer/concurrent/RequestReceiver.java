@@ -0,0 +1,20 @@
+package com.whs.soccer.concurrent;
+
+/**
+ * This interface may be implemented by an {@link EventReceiver} to answer the
+ * requests sent by {@link EventBus#call}. The events posted by {@link EventBus#post}
+ * are still delivered to {@link #onReceiveEvent(int, Object[])}.
+ * @author antoniochen
+ * @see EventBus#callWithTimeout(int, EventBus.ThreadMode, long, Object[])
+ */
+public interface RequestReceiver extends EventReceiver {
+    /**
+     * Callback method to be invoked when a request was delivered to this receiver.
+     * @param token The token, passed earlier by {@link EventBus#call}.
+     * @param args The request arguments, passed earlier by {@link EventBus#call}.
+     * May be <tt>null</tt>.
+     * @return The response to complete the {@link EventBus.ResponseFuture}. May be
+     * <tt>null</tt>, if this receiver has no response to the request.
+     */
+    Object onReceiveRequest(int token, Object[] args);
+}
@@ -0,0 +1,20 @@
+package com.whs.soccer.concurrent;
+
+/**
+ * Callback interface to be invoked when an {@link EventBus.ResponseFuture}
+ * completes. The callback is delivered with the thread mode passed to
+ * {@link EventBus.ResponseFuture#setCallback}, it is invoked exactly once.
+ * @author antoniochen
+ * @see EventBus#callWithTimeout(int, EventBus.ThreadMode, long, Object[])
+ */
+public interface ResponseCallback {
+    /**
+     * Callback method to be invoked when a request completes.
+     * @param token The token, passed earlier by {@link EventBus#call}.
+     * @param response The response of the request. May be <tt>null</tt>.
+     * @param error <tt>null</tt> if the request succeeded. A <tt>TimeoutException</tt>
+     * if the request timed out, a <tt>CancellationException</tt> if the request was
+     * cancelled, otherwise the exception thrown by the subscriber.
+     */
+    void onResponse(int token, Object response, Throwable error);
+}
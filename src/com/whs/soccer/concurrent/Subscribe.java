@@ -0,0 +1,37 @@
+package com.whs.soccer.concurrent;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import com.whs.soccer.concurrent.EventBus.ThreadMode;
+
+/**
+ * Marks the event method of an {@link EventBus} subscriber. At build time the
+ * <tt>SubscriberIndexProcessor</tt> generates a {@link SubscriberIndex}, which
+ * calls the annotated methods directly, so {@link EventBus#register(int, Object)}
+ * does no reflection once the index was added by {@link EventBus#addIndex}.
+ * <p>Note that the event method prototype:
+ * <em>public void <b>anyName</b>(int token, Object[] args)</em>, the
+ * method and its class must be public, and a class may have at most
+ * one annotated method. The method may return a value instead of
+ * <tt>void</tt> to answer the requests sent by {@link EventBus#call}.</p>
+ * @author antoniochen
+ * @see SubscriberIndex
+ * @see EventBus#addIndex(SubscriberIndex)
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.CLASS)
+public @interface Subscribe {
+    /**
+     * The {@link ThreadMode} that the events will be always delivered, regardless of
+     * the thread mode passed by {@link EventBus#post} or {@link EventBus#postDelayed}.
+     * An explicit {@link ThreadMode#POST} always delivers the events in the posting
+     * thread. If the mode is omitted, the events will be delivered with the thread
+     * mode passed by the poster, the default value is only a placeholder.
+     */
+    ThreadMode mode() default ThreadMode.POST;
+}
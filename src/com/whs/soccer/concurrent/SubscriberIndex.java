@@ -0,0 +1,51 @@
+package com.whs.soccer.concurrent;
+
+import com.whs.soccer.concurrent.EventBus.ThreadMode;
+
+/**
+ * This interface is implemented by the index generated by the
+ * <tt>SubscriberIndexProcessor</tt> from the {@link Subscribe} methods.
+ * The index maps a subscriber class to an {@link Invoker}, which calls
+ * its event method directly without reflection.
+ * @author antoniochen
+ * @see Subscribe
+ * @see EventBus#addIndex(SubscriberIndex)
+ */
+public interface SubscriberIndex {
+    /**
+     * Returns the {@link Invoker} of the event method declared
+     * by the specified class (not by its super classes).
+     * @param subscriberClass The subscriber class.
+     * @return The <tt>Invoker</tt>, or <tt>null</tt> if the
+     * <em>subscriberClass</em> has no indexed event method.
+     */
+    Invoker getInvoker(Class<?> subscriberClass);
+
+    /**
+     * Class Invoker calls an indexed event method directly.
+     */
+    public static abstract class Invoker {
+        /**
+         * May be <tt>null</tt>. The {@link ThreadMode} that the events will be always delivered.
+         */
+        public final ThreadMode mode;
+
+        /**
+         * Constructor
+         * @param mode May be <tt>null</tt>. The {@link ThreadMode}
+         * that the events will be always delivered.
+         */
+        protected Invoker(ThreadMode mode) {
+            this.mode = mode;
+        }
+
+        /**
+         * Invokes the event method of the <em>subscriber</em>.
+         * @param subscriber The event subscriber, never <tt>null</tt>.
+         * @param token The token, passed earlier by {@link EventBus#post}.
+         * @param args The event method arguments. May be <tt>null</tt>.
+         * @return The result of the event method, <tt>null</tt> if it returns <tt>void</tt>.
+         */
+        public abstract Object invoke(Object subscriber, int token, Object[] args);
+    }
+}
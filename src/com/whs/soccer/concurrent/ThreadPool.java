@@ -2,9 +2,8 @@ package com.whs.soccer.concurrent;
 
 import java.lang.ref.WeakReference;
 import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.RejectedExecutionHandler;
-import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -15,6 +14,9 @@ import android.os.Process;
 
 /**
  * Class ThreadPool
+ * <p>The tasks executed while all threads are busy wait in the pending queue,
+ * a finishing thread takes the next pending task directly, without posting it
+ * through the {@link Handler}.</p>
  * @author antoniochen
  */
 public class ThreadPool extends ThreadPoolExecutor {
@@ -26,7 +28,8 @@ public class ThreadPool extends ThreadPoolExecutor {
      * Constructor
      * <P>Creates a new <tt>ThreadPool</tt> with the given initial parameters.</P>
      * @param maxThreads The maximum number of threads to allow in the pool.
-     * @param handler The handler to post pending task to this <tt>ThreadPool</tt>.
+     * @param handler The handler returned by {@link #getHandler()}, the pool doesn't use
+     * it. May be <tt>null</tt>.
      * @see #ThreadPool(int, long, TimeUnit, Handler, int)
      */
     public ThreadPool(int maxThreads, Handler handler) {
@@ -37,19 +40,47 @@ public class ThreadPool extends ThreadPoolExecutor {
      * Constructor
      * <P>Creates a new <tt>ThreadPool</tt> with the given initial parameters.</P>
      * @param maxThreads The maximum number of threads to allow in the pool.
-     * @param keepAliveTime The maximum time that excess idle threads will wait for new
-     * tasks before terminating.
+     * @param keepAliveTime The maximum time that idle threads will wait for new tasks
+     * before terminating, <tt>0</tt> terminates them at once.
      * @param unit The time unit for the <em>keepAliveTime</em> parameter.
-     * @param handler The handler to post pending task to this <tt>ThreadPool</tt>.
+     * @param handler The handler returned by {@link #getHandler()}, the pool doesn't use
+     * it. May be <tt>null</tt>.
      * @param priority The priority to run the thread at. The value supplied must be from
      * {@link android.os.Process} and <b>not</b> from {@link java.lang.Thread}.
      * @see #ThreadPool(int, Handler)
      */
     public ThreadPool(int maxThreads, long keepAliveTime, TimeUnit unit, Handler handler, int priority) {
-        super(0, maxThreads, keepAliveTime, unit, new SynchronousQueue<Runnable>(), new DefaultThreadFactory(priority));
-        setRejectedExecutionHandler(new RejectedHandler());
+        this(maxThreads, keepAliveTime, unit, handler, priority, new LinkedBlockingQueue<Runnable>());
+    }
+
+    /**
+     * Constructor
+     * <P>Creates a new <tt>ThreadPool</tt> with the given initial parameters.</P>
+     * @param maxThreads The maximum number of threads to allow in the pool.
+     * @param keepAliveTime The maximum time that idle threads will wait for new tasks
+     * before terminating, <tt>0</tt> terminates them at once.
+     * @param unit The time unit for the <em>keepAliveTime</em> parameter.
+     * @param handler The handler returned by {@link #getHandler()}, the pool doesn't use
+     * it. May be <tt>null</tt>.
+     * @param priority The priority to run the thread at. The value supplied must be from
+     * {@link android.os.Process} and <b>not</b> from {@link java.lang.Thread}.
+     * @param pendingQueue The unbounded queue to hold the pending tasks.
+     * @see #ThreadPool(int, long, TimeUnit, Handler, int)
+     */
+    protected ThreadPool(int maxThreads, long keepAliveTime, TimeUnit unit, Handler handler, int priority, BlockingQueue<Runnable> pendingQueue) {
+        // The threads are started up to the maxThreads before the tasks are queued,
+        // and the idle threads terminate after the keepAliveTime, as the core threads.
+        // The core threads can't time out with a zero keepAliveTime, the shortest one
+        // terminates the idle threads at once instead.
+        super(maxThreads, maxThreads, keepAliveTime, unit, pendingQueue, new DefaultThreadFactory(priority));
+        if (keepAliveTime == 0) {
+            setKeepAliveTime(1, TimeUnit.NANOSECONDS);
+        }
+
+        allowCoreThreadTimeOut(true);
+
         mHandler = handler;
-        mPendingTasks = new ConcurrentLinkedQueue<Runnable>();
+        mPendingTasks = getQueue();
     }
 
     /**
@@ -103,37 +134,6 @@ public class ThreadPool extends ThreadPoolExecutor {
                 listener.onAfterExecute(target, exception);
             }
         }
-
-        final Runnable runnable = mPendingTasks.poll();
-        if (runnable != null) {
-            mHandler.post(new PendingTask(runnable));
-        }
-    }
-
-    /**
-     * Nested class PendingTask
-     */
-    private final class PendingTask implements Runnable {
-        private final Runnable task;
-
-        public PendingTask(Runnable task) {
-            this.task = task;
-        }
-
-        @Override
-        public void run() {
-            execute(task);
-        }
-    }
-
-    /**
-     * Nested class RejectedHandler
-     */
-    private final class RejectedHandler implements RejectedExecutionHandler {
-        @Override
-        public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
-            mPendingTasks.offer(runnable);
-        }
     }
 
     /**
@@ -1,47 +1,171 @@
 package com.whs.soccer.concurrent;
 
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 import android.os.Handler;
 import android.os.Process;
 
 /**
  * Class ThreadPoolManager
+ * <p>The pending tasks are ordered by their {@link PriorityTask#getPriority()
+ * priority}, the higher priority runs first. The other tasks have priority <tt>0</tt>.
+ * The tasks of the same priority run in the {@link QueueOrder} of this pool, which
+ * also decides how the lower priorities are kept from starving.</p>
+ * <p>The pending and running tasks are indexed by their {@link Task#getId()
+ * identifier}, which should be unique among them. If two tasks have the same
+ * identifier, the lookups by identifier find the latest one.</p>
+ * <p>The tasks submitted by {@link #submit(long, int, Callable)} are single-flight:
+ * a submission with the identifier of a pending or running shared task attaches to
+ * it and receives its result, instead of running the work again.</p>
  * @author antoniochen
  */
 public class ThreadPoolManager extends ThreadPool {
-    private final Queue<Task> mRunningTasks;
+    private final PendingQueue mPendingQueue;
+
+    /**
+     * The map identifiers to the running {@link Task}s.
+     */
+    private final ConcurrentHashMap<Long, Task> mRunningTasks;
+
+    /**
+     * The map identifiers to the pending and running shared tasks.
+     */
+    private final ConcurrentHashMap<Long, SharedTask<?>> mSharedTasks;
 
     /**
      * Constructor
      * <P>Creates a new <tt>ThreadPoolManager</tt> with the given initial parameters.</P>
      * @param maxThreads The maximum number of threads to allow in the pool.
-     * @param handler The handler to post pending task to this <tt>ThreadPoolManager</tt>.
+     * @param handler The handler returned by {@link #getHandler()}, the pool doesn't use
+     * it. May be <tt>null</tt>.
      * @see #ThreadPoolManager(int, long, TimeUnit, Handler, int)
      */
     public ThreadPoolManager(int maxThreads, Handler handler) {
-        super(maxThreads, 60, TimeUnit.SECONDS, handler, Process.THREAD_PRIORITY_DEFAULT);
-        mRunningTasks = new ConcurrentLinkedQueue<Task>();
+        this(maxThreads, 60, TimeUnit.SECONDS, handler, Process.THREAD_PRIORITY_DEFAULT);
     }
 
     /**
      * Constructor
      * <P>Creates a new <tt>ThreadPoolManager</tt> with the given initial parameters.</P>
      * @param maxThreads The maximum number of threads to allow in the pool.
-     * @param keepAliveTime The maximum time that excess idle threads will wait for new
-     * tasks before terminating.
+     * @param keepAliveTime The maximum time that idle threads will wait for new tasks
+     * before terminating, <tt>0</tt> terminates them at once.
      * @param unit The time unit for the <em>keepAliveTime</em> parameter.
-     * @param handler The handler to post pending task to this <tt>ThreadPoolManager</tt>.
+     * @param handler The handler returned by {@link #getHandler()}, the pool doesn't use
+     * it. May be <tt>null</tt>.
      * @param priority The priority to run the thread at. The value supplied must be from
      * {@link android.os.Process} and <b>not</b> from {@link java.lang.Thread}.
      * @see #ThreadPoolManager(int, Handler)
      */
     public ThreadPoolManager(int maxThreads, long keepAliveTime, TimeUnit unit, Handler handler, int priority) {
-        super(maxThreads, keepAliveTime, unit, handler, priority);
-        mRunningTasks = new ConcurrentLinkedQueue<Task>();
+        super(maxThreads, keepAliveTime, unit, handler, priority, new PendingQueue());
+        mRunningTasks = new ConcurrentHashMap<Long, Task>();
+        mSharedTasks  = new ConcurrentHashMap<Long, SharedTask<?>>();
+        mPendingQueue = (PendingQueue)mPendingTasks;
+    }
+
+    /**
+     * Sets the order of the pending tasks with the same priority. For the scroll-driven
+     * workloads, {@link QueueOrder#LIFO} runs the tasks of the most recent items first.
+     * @param order The {@link QueueOrder}. The default order is {@link QueueOrder#FIFO}.
+     * @see #getQueueOrder()
+     */
+    public void setQueueOrder(QueueOrder order) {
+        if (order == null) {
+            throw new NullPointerException("The order == null");
+        }
+
+        mPendingQueue.setOrder(order);
+    }
+
+    /**
+     * Returns the order of the pending tasks with the same priority.
+     * @return The {@link QueueOrder}.
+     * @see #setQueueOrder(QueueOrder)
+     */
+    public QueueOrder getQueueOrder() {
+        return mPendingQueue.getOrder();
+    }
+
+    /**
+     * Changes the priority of the pending task with specified identifier.
+     * @param id The identifier of the task.
+     * @param priority The new priority of the task.
+     * @return <tt>true</tt> if the task is pending, <tt>false</tt> otherwise.
+     * @see PriorityTask#getPriority()
+     */
+    public boolean setPriority(long id, int priority) {
+        return mPendingQueue.setPriority(id, priority);
+    }
+
+    /**
+     * Submits a single-flight task. If a task submitted by this method with the same
+     * <em>id</em> is pending or running, this call attaches to it and returns a new
+     * {@link SharedFuture} of its result, the <em>callable</em> is not called. The
+     * shared task gets the highest priority of the attached submissions.
+     * <p>Each returned <tt>SharedFuture</tt> is cancelled independently, the shared
+     * task is cancelled when all its futures have been cancelled. {@link #cancel(long,
+     * boolean)} cancels the shared task and all its futures.</p>
+     * <p>The submissions with the same <em>id</em> should produce the same type of result.
+     * A shared task which is {@link #remove(long) removed} from the pending queue instead
+     * of cancelled never completes its futures.</p>
+     * @param id The identifier of the task.
+     * @param priority The priority of the task.
+     * @param callable The work to run, if no task with the same <em>id</em> is in flight.
+     * @return The {@link SharedFuture} of the result.
+     * @throws RejectedExecutionException if this pool has been shut down.
+     * @see SharedFuture#setCallback(ResultCallback)
+     */
+    @SuppressWarnings("unchecked")
+    public <Result> SharedFuture<Result> submit(long id, int priority, Callable<Result> callable) {
+        if (callable == null) {
+            throw new NullPointerException("The callable == null");
+        }
+
+        SharedTask<Result> task;
+        SharedFuture<Result> future;
+        for (;;) {
+            final SharedTask<Result> shared = (SharedTask<Result>)mSharedTasks.get(id);
+            if (shared != null && (future = shared.attach(priority)) != null) {
+                return future;
+            }
+
+            // Attaches the first future before the task is published, so the task
+            // can't be cancelled by the concurrent submissions before it is executed.
+            task = new SharedTask<Result>(this, id, priority, callable);
+            future = task.attach(priority);
+            if (shared != null ? mSharedTasks.replace(id, shared, task) : mSharedTasks.putIfAbsent(id, task) == null) {
+                break;
+            }
+        }
+
+        try {
+            execute(task);
+        } catch (RejectedExecutionException e) {
+            task.complete(SharedTask.FAILED, null, e);
+            throw e;
+        }
+
+        return future;
     }
 
     /**
@@ -53,16 +177,7 @@ public class ThreadPoolManager extends ThreadPool {
      * @see #remove(Runnable)
      */
     public boolean remove(long id) {
-        final Iterator<Runnable> itor = mPendingTasks.iterator();
-        while (itor.hasNext()) {
-            final Runnable runnable = itor.next();
-            if ((runnable instanceof Task) && ((Task)runnable).getId() == id) {
-                itor.remove();
-                return true;
-            }
-        }
-
-        return false;
+        return mPendingQueue.removeTask(id);
     }
 
     /**
@@ -72,17 +187,51 @@ public class ThreadPoolManager extends ThreadPool {
      * @see #cancel(long, boolean)
      */
     public void cancelAll(boolean mayCancelIfPending) {
+        cancel(null, mayCancelIfPending);
+    }
+
+    /**
+     * Attempts to cancel the pending and executing tasks accepted by the specified <em>filter</em>.
+     * @param filter The {@link TaskFilter} to accept the tasks to cancel, or <tt>null</tt> to
+     * cancel all tasks. It is called outside of any lock of this pool.
+     * @param mayCancelIfPending <tt>true</tt> cancel the task from the the pending
+     * queue and running queue, <tt>false</tt> cancel the task from the running queue.
+     * @return The number of the cancelled tasks.
+     * @see #cancel(long, long, boolean)
+     */
+    public int cancel(TaskFilter filter, boolean mayCancelIfPending) {
+        int count = 0;
         if (mayCancelIfPending) {
-            for (Runnable runnable : mPendingTasks) {
-                if (runnable instanceof Task) {
-                    ((Task)runnable).cancel();
-                }
+            for (Task task : mPendingQueue.getTasks()) {
+                count += cancel(task, filter);
             }
         }
 
-        for (Task task : mRunningTasks) {
-            task.cancel();
+        for (Task task : mRunningTasks.values()) {
+            count += cancel(task, filter);
         }
+
+        return count;
+    }
+
+    /**
+     * Attempts to cancel the pending and executing tasks whose identifier is in the
+     * specified range.
+     * @param fromId The lowest identifier of the tasks to cancel, inclusive.
+     * @param toId The highest identifier of the tasks to cancel, inclusive.
+     * @param mayCancelIfPending <tt>true</tt> cancel the task from the the pending
+     * queue and running queue, <tt>false</tt> cancel the task from the running queue.
+     * @return The number of the cancelled tasks.
+     * @see #cancel(TaskFilter, boolean)
+     */
+    public int cancel(final long fromId, final long toId, boolean mayCancelIfPending) {
+        return cancel(new TaskFilter() {
+            @Override
+            public boolean accept(Task task) {
+                final long id = task.getId();
+                return (id >= fromId && id <= toId);
+            }
+        }, mayCancelIfPending);
     }
 
     /**
@@ -94,20 +243,14 @@ public class ThreadPoolManager extends ThreadPool {
      * @see #cancelAll(boolean)
      */
     public boolean cancel(long id, boolean mayCancelIfPending) {
-        if (mayCancelIfPending) {
-            for (Runnable runnable : mPendingTasks) {
-                if ((runnable instanceof Task) && ((Task)runnable).getId() == id) {
-                    ((Task)runnable).cancel();
-                    return true;
-                }
-            }
+        Task task = (mayCancelIfPending ? mPendingQueue.getTask(id) : null);
+        if (task == null) {
+            task = mRunningTasks.get(id);
         }
 
-        for (Task task : mRunningTasks) {
-            if (task.getId() == id) {
-                task.cancel();
-                return true;
-            }
+        if (task != null) {
+            task.cancel();
+            return true;
         }
 
         return false;
@@ -116,7 +259,8 @@ public class ThreadPoolManager extends ThreadPool {
     @Override
     protected void beforeExecute(Thread thread, Runnable target) {
         if (target instanceof Task) {
-            mRunningTasks.offer((Task)target);
+            final Task task = (Task)target;
+            mRunningTasks.put(task.getId(), task);
         }
 
         super.beforeExecute(thread, target);
@@ -125,12 +269,227 @@ public class ThreadPoolManager extends ThreadPool {
     @Override
     protected void afterExecute(Runnable target, Throwable exception) {
         if (target instanceof Task) {
-            mRunningTasks.remove(target);
+            final Task task = (Task)target;
+            mRunningTasks.remove(task.getId(), task);
         }
 
         super.afterExecute(target, exception);
     }
 
+    private static int cancel(Task task, TaskFilter filter) {
+        if (filter == null || filter.accept(task)) {
+            task.cancel();
+            return 1;
+        }
+
+        return 0;
+    }
+
+    /**
+     * The order of the pending tasks with the same priority.
+     */
+    public static enum QueueOrder {
+        /**
+         * The tasks with the same priority run in the order they were executed.
+         * A pending task gains one priority level for each second it waits, so
+         * it runs before the tasks executed a second later with a priority one
+         * level higher.
+         */
+        FIFO,
+
+        /**
+         * The tasks with the same priority run in the reverse order they were
+         * executed. The tasks don't age until the oldest pending task has waited
+         * five seconds, then the tasks which have waited that long run first,
+         * oldest first, whatever their priority.
+         */
+        LIFO
+    }
+
+    /**
+     * Callback interface to be invoked when a {@link SharedFuture} completes.
+     * @see SharedFuture#setCallback(ResultCallback)
+     */
+    public static interface ResultCallback<Result> {
+        /**
+         * Callback method to be invoked when a shared task completes.
+         * @param id The identifier, passed earlier by {@link ThreadPoolManager#submit}.
+         * @param result The result of the task. May be <tt>null</tt>.
+         * @param error <tt>null</tt> if the task succeeded. A <tt>CancellationException</tt>
+         * if the future or the task was cancelled, otherwise the exception thrown by the task.
+         */
+        void onResult(long id, Result result, Throwable error);
+    }
+
+    /**
+     * Class SharedFuture is the result of a task submitted by {@link ThreadPoolManager#submit},
+     * as seen by one submission. The futures of the same shared task complete together, except
+     * for a cancelled future which completes immediately.
+     * @see ThreadPoolManager#submit(long, int, Callable)
+     */
+    public static final class SharedFuture<Result> implements Future<Result> {
+        private final SharedTask<Result> mTask;
+
+        /**
+         * The fields are guarded by the {@link #mTask}.
+         */
+        private boolean mDone;
+        private boolean mCancelled;
+        private ResultCallback<Result> mCallback;
+
+        /* package */ SharedFuture(SharedTask<Result> task) {
+            mTask = task;
+        }
+
+        /**
+         * Sets the callback to be invoked when this future completes. The callback is
+         * delivered through the {@link ThreadPool#getHandler() handler} of the pool, or
+         * on the completing thread if the pool has no handler. If this future has already
+         * completed, the callback is delivered immediately.
+         * @param callback The {@link ResultCallback}.
+         * @return This <tt>SharedFuture</tt>.
+         */
+        public SharedFuture<Result> setCallback(ResultCallback<Result> callback) {
+            if (callback == null) {
+                throw new NullPointerException("The callback == null");
+            }
+
+            synchronized (mTask) {
+                if (mCallback != null) {
+                    throw new IllegalStateException("The callback is already set");
+                }
+
+                mCallback = callback;
+                if (!mDone) {
+                    return this;
+                }
+            }
+
+            deliverCallback();
+            return this;
+        }
+
+        /**
+         * Cancels this future. The shared task is cancelled when it is the last future
+         * of the task, the callback is invoked with a <tt>CancellationException</tt>.
+         * @param mayInterruptIfRunning Ignored, a running task is never interrupted, its
+         * result is discarded.
+         * @return <tt>true</tt> if this future was pending and has been cancelled,
+         * <tt>false</tt> otherwise.
+         */
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return mTask.detach(this);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            synchronized (mTask) {
+                return (mCancelled || (mDone && mTask.mState == SharedTask.CANCELLED));
+            }
+        }
+
+        @Override
+        public boolean isDone() {
+            synchronized (mTask) {
+                return mDone;
+            }
+        }
+
+        @Override
+        public Result get() throws InterruptedException, ExecutionException {
+            synchronized (mTask) {
+                while (!mDone) {
+                    mTask.wait();
+                }
+
+                return getResult();
+            }
+        }
+
+        @Override
+        public Result get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            synchronized (mTask) {
+                final long deadline = System.nanoTime() + unit.toNanos(timeout);
+                while (!mDone) {
+                    final long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        throw new TimeoutException();
+                    }
+
+                    TimeUnit.NANOSECONDS.timedWait(mTask, remaining);
+                }
+
+                return getResult();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return new StringBuilder(64).append("SharedFuture [ id = ").append(mTask.mId).append(", done = ").append(isDone()).append(" ]").toString();
+        }
+
+        /* package */ void setDone(boolean cancelled) {
+            mDone = true;
+            mCancelled = cancelled;
+        }
+
+        /* package */ void deliverCallback() {
+            final Runnable delivery = new Runnable() {
+                @Override
+                public void run() {
+                    final ResultCallback<Result> callback;
+                    final Result result;
+                    final Throwable error;
+                    synchronized (mTask) {
+                        callback = mCallback;
+                        result = (mCancelled ? null : mTask.mResult);
+                        error  = (mCancelled ? new CancellationException("The future was cancelled") : mTask.mError);
+                    }
+
+                    callback.onResult(mTask.mId, result, error);
+                }
+            };
+
+            final Handler handler = mTask.mManager.getHandler();
+            if (handler != null) {
+                handler.post(delivery);
+            } else {
+                delivery.run();
+            }
+        }
+
+        private Result getResult() throws ExecutionException {
+            if (mCancelled) {
+                throw new CancellationException("The future was cancelled");
+            }
+
+            switch (mTask.mState) {
+            case SharedTask.CANCELLED:
+                throw (CancellationException)mTask.mError;
+
+            case SharedTask.FAILED:
+                throw new ExecutionException(mTask.mError);
+
+            default:
+                return mTask.mResult;
+            }
+        }
+    }
+
+    /**
+     * Used for selecting the tasks to cancel.
+     * @see ThreadPoolManager#cancel(TaskFilter, boolean)
+     */
+    public static interface TaskFilter {
+        /**
+         * Tests whether the specified <em>task</em> should be cancelled.
+         * @param task The pending or running {@link Task}.
+         * @return <tt>true</tt> to cancel the <em>task</em>, <tt>false</tt> otherwise.
+         */
+        boolean accept(Task task);
+    }
+
     /**
      * This interface should be implemented by any class whose
      * instances are intended to be executed by {@link ThreadPoolManager}.
@@ -150,4 +509,716 @@ public class ThreadPoolManager extends ThreadPool {
          */
         void cancel();
     }
-}
\ No newline at end of file
+
+    /**
+     * This interface may be implemented by a {@link Task} which is queued
+     * with a priority. The other tasks have priority <tt>0</tt>.
+     * @see PriorityTask#getPriority()
+     */
+    public static interface PriorityTask extends Task {
+        /**
+         * Gets the priority of this task when it is queued, the higher priority runs first.
+         * @return The task's priority.
+         * @see ThreadPoolManager#setPriority(long, int)
+         */
+        int getPriority();
+    }
+
+    /**
+     * Nested class SharedTask runs the work of a single-flight submission once, and
+     * completes the {@link SharedFuture}s of all attached submissions.
+     */
+    private static final class SharedTask<Result> implements PriorityTask {
+        /* package */ static final int PENDING   = 0;
+        /* package */ static final int RUNNING   = 1;
+        /* package */ static final int SUCCEEDED = 2;
+        /* package */ static final int FAILED    = 3;
+        /* package */ static final int CANCELLED = 4;
+
+        /* package */ final long mId;
+        /* package */ final ThreadPoolManager mManager;
+        private final Callable<Result> mCallable;
+        private volatile int mPriority;
+
+        /**
+         * The fields are guarded by this object.
+         */
+        /* package */ int mState;
+        /* package */ Result mResult;
+        /* package */ Throwable mError;
+        private ArrayList<SharedFuture<Result>> mFutures;
+
+        public SharedTask(ThreadPoolManager manager, long id, int priority, Callable<Result> callable) {
+            mId = id;
+            mManager  = manager;
+            mCallable = callable;
+            mPriority = priority;
+            mFutures  = new ArrayList<SharedFuture<Result>>(2);
+        }
+
+        @Override
+        public long getId() {
+            return mId;
+        }
+
+        @Override
+        public int getPriority() {
+            return mPriority;
+        }
+
+        /**
+         * Cancels this task and all its futures.
+         */
+        @Override
+        public void cancel() {
+            complete(CANCELLED, null, new CancellationException("The task was cancelled"));
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (mState != PENDING) {
+                    return;
+                }
+
+                mState = RUNNING;
+            }
+
+            try {
+                complete(SUCCEEDED, mCallable.call(), null);
+            } catch (Throwable e) {
+                complete(FAILED, null, e);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return new StringBuilder(64).append("SharedTask [ id = ").append(mId).append(", state = ").append(mState).append(" ]").toString();
+        }
+
+        /**
+         * Attaches a new submission to this task.
+         * @return The <tt>SharedFuture</tt> of the submission, or <tt>null</tt> if this task
+         * has completed.
+         */
+        public SharedFuture<Result> attach(int priority) {
+            final SharedFuture<Result> future;
+            synchronized (this) {
+                if (mState > RUNNING) {
+                    return null;
+                }
+
+                future = new SharedFuture<Result>(this);
+                mFutures.add(future);
+                if (priority <= mPriority || mState != PENDING) {
+                    return future;
+                }
+
+                mPriority = priority;
+            }
+
+            // Raises the node of this task, not a task with the same identifier.
+            mManager.mPendingQueue.setPriority(this, priority);
+            return future;
+        }
+
+        /**
+         * Detaches the cancelled <em>future</em> from this task, and cancels this
+         * task if it was the last future.
+         * @return <tt>true</tt> if the <em>future</em> was pending, <tt>false</tt> otherwise.
+         */
+        public boolean detach(SharedFuture<Result> future) {
+            final boolean callback, last;
+            synchronized (this) {
+                if (future.mDone) {
+                    return false;
+                }
+
+                future.setDone(true);
+                mFutures.remove(future);
+                notifyAll();
+                last = mFutures.isEmpty();
+                callback = (future.mCallback != null);
+            }
+
+            if (callback) {
+                future.deliverCallback();
+            }
+
+            if (last) {
+                complete(CANCELLED, null, new CancellationException("The task was cancelled"));
+            }
+
+            return true;
+        }
+
+        public boolean complete(int state, Result result, Throwable error) {
+            final ArrayList<SharedFuture<Result>> futures;
+            final boolean pending;
+            synchronized (this) {
+                if (mState > RUNNING) {
+                    return false;
+                }
+
+                pending = (mState == PENDING);
+                mState  = state;
+                mError  = error;
+                mResult = result;
+                futures = mFutures;
+                mFutures = null;
+                for (int i = futures.size() - 1; i >= 0; --i) {
+                    // Keeps the futures whose callback is delivered by this call.
+                    final SharedFuture<Result> future = futures.get(i);
+                    future.setDone(false);
+                    if (future.mCallback == null) {
+                        futures.remove(i);
+                    }
+                }
+
+                notifyAll();
+            }
+
+            mManager.mSharedTasks.remove(mId, this);
+            if (pending && state == CANCELLED) {
+                mManager.remove(this);
+            }
+
+            for (int i = 0, size = futures.size(); i < size; ++i) {
+                futures.get(i).deliverCallback();
+            }
+
+            return true;
+        }
+    }
+
+    /**
+     * Nested class PendingQueue
+     */
+    private static final class PendingQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable> {
+        /**
+         * The time (in nanoseconds) a priority level is worth in {@link QueueOrder#FIFO}.
+         */
+        private static final long AGING_NANOS = 1000000000L;
+
+        /**
+         * The time (in nanoseconds) a task waits before it is starved in {@link QueueOrder#LIFO}.
+         */
+        private static final long STARVATION_NANOS = 5000000000L;
+
+        /**
+         * The time (in nanoseconds) the ranks are counted from, so they don't overflow.
+         */
+        private final long mEpoch = System.nanoTime();
+
+        private final ReentrantLock mLock = new ReentrantLock();
+        private final Condition mNotEmpty = mLock.newCondition();
+
+        /**
+         * The binary min-heap of the nodes ordered by their rank, guarded by the {@link #mLock}.
+         */
+        private Node[] mHeap = new Node[16];
+        private int mSize;
+        private long mSequence;
+        private QueueOrder mOrder = QueueOrder.FIFO;
+
+        /**
+         * The oldest and the newest nodes of the list of the nodes in the order
+         * they were queued, guarded by the {@link #mLock}.
+         */
+        private Node mOldest;
+        private Node mNewest;
+
+        /**
+         * The map identifiers to the nodes of the {@link Task}s, guarded by the {@link #mLock}.
+         */
+        private final HashMap<Long, Node> mIndex = new HashMap<Long, Node>();
+
+        /**
+         * The map tasks to their nodes, so {@link #remove(Object)} is <em>O(log n)</em>,
+         * and the number of the nodes which are not in the map since the same task was
+         * queued again, both guarded by the {@link #mLock}.
+         */
+        private final IdentityHashMap<Runnable, Node> mNodes = new IdentityHashMap<Runnable, Node>();
+        private int mUnmapped;
+
+        public QueueOrder getOrder() {
+            mLock.lock();
+            try {
+                return mOrder;
+            } finally {
+                mLock.unlock();
+            }
+        }
+
+        public void setOrder(QueueOrder order) {
+            mLock.lock();
+            try {
+                if (mOrder != order) {
+                    // Rebuilds the heap, the ranks and the list don't depend on the order.
+                    mOrder = order;
+                    for (int i = (mSize >>> 1) - 1; i >= 0; --i) {
+                        siftDown(i, mHeap[i]);
+                    }
+                }
+            } finally {
+                mLock.unlock();
+            }
+        }
+
+        public boolean setPriority(long id, int priority) {
+            mLock.lock();
+            try {
+                return setPriority(mIndex.get(id), priority);
+            } finally {
+                mLock.unlock();
+            }
+        }
+
+        public boolean setPriority(Runnable task, int priority) {
+            mLock.lock();
+            try {
+                return setPriority(mNodes.get(task), priority);
+            } finally {
+                mLock.unlock();
+            }
+        }
+
+        public Task getTask(long id) {
+            mLock.lock();
+            try {
+                final Node node = mIndex.get(id);
+                return (node != null ? (Task)node.task : null);
+            } finally {
+                mLock.unlock();
+            }
+        }
+
+        public boolean removeTask(long id) {
+            mLock.lock();
+            try {
+                final Node node = mIndex.get(id);
+                if (node == null) {
+                    return false;
+                }
+
+                removeAt(node.index);
+                return true;
+            } finally {
+                mLock.unlock();
+            }
+        }
+
+        /**
+         * Returns a snapshot of the pending {@link Task}s.
+         */
+        public List<Task> getTasks() {
+            mLock.lock();
+            try {
+                final List<Task> result = new ArrayList<Task>(mIndex.size());
+                for (int i = 0; i < mSize; ++i) {
+                    if (mHeap[i].task instanceof Task) {
+                        result.add((Task)mHeap[i].task);
+                    }
+                }
+
+                return result;
+            } finally {
+                mLock.unlock();
+            }
+        }
+
+        @Override
+        public boolean offer(Runnable task) {
+            if (task == null) {
+                throw new NullPointerException("The task == null");
+            }
+
+            final Node node = new Node(task, (task instanceof PriorityTask ? ((PriorityTask)task).getPriority() : 0));
+            mLock.lock();
+            try {
+                if (mSize == mHeap.length) {
+                    mHeap = Arrays.copyOf(mHeap, mSize << 1);
+                }
+
+                node.sequence = ++mSequence;
+                if (task instanceof Task) {
+                    mIndex.put(((Task)task).getId(), node);
+                }
+
+                if (mNodes.put(task, node) != null) {
+                    ++mUnmapped;
+                }
+
+                if (mNewest != null) {
+                    mNewest.next = node;
+                    node.prev = mNewest;
+                } else {
+                    mOldest = node;
+                }
+
+                mNewest = node;
+                rank(node);
+                siftUp(mSize++, node);
+                mNotEmpty.signal();
+                return true;
+            } finally {
+                mLock.unlock();
+            }
+        }
+
+        @Override
+        public boolean offer(Runnable task, long timeout, TimeUnit unit) {
+            return offer(task);
+        }
+
+        @Override
+        public void put(Runnable task) {
+            offer(task);
+        }
+
+        @Override
+        public Runnable poll() {
+            mLock.lock();
+            try {
+                return (mSize > 0 ? removeAt(headIndex()) : null);
+            } finally {
+                mLock.unlock();
+            }
+        }
+
+        @Override
+        public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException {
+            long nanos = unit.toNanos(timeout);
+            mLock.lockInterruptibly();
+            try {
+                while (mSize == 0) {
+                    if (nanos <= 0) {
+                        return null;
+                    }
+
+                    nanos = mNotEmpty.awaitNanos(nanos);
+                }
+
+                return removeAt(headIndex());
+            } finally {
+                mLock.unlock();
+            }
+        }
+
+        @Override
+        public Runnable take() throws InterruptedException {
+            mLock.lockInterruptibly();
+            try {
+                while (mSize == 0) {
+                    mNotEmpty.await();
+                }
+
+                return removeAt(headIndex());
+            } finally {
+                mLock.unlock();
+            }
+        }
+
+        @Override
+        public Runnable peek() {
+            mLock.lock();
+            try {
+                return (mSize > 0 ? mHeap[headIndex()].task : null);
+            } finally {
+                mLock.unlock();
+            }
+        }
+
+        @Override
+        public int size() {
+            mLock.lock();
+            try {
+                return mSize;
+            } finally {
+                mLock.unlock();
+            }
+        }
+
+        @Override
+        public int remainingCapacity() {
+            return Integer.MAX_VALUE;
+        }
+
+        /**
+         * Removes the specified <em>task</em>, which is matched by identity.
+         */
+        @Override
+        public boolean remove(Object task) {
+            mLock.lock();
+            try {
+                final Node node = mNodes.get(task);
+                if (node != null) {
+                    removeAt(node.index);
+                    return true;
+                }
+
+                // The task may be queued again, and its map entry removed.
+                for (int i = 0; i < mSize && mUnmapped > 0; ++i) {
+                    if (mHeap[i].task == task) {
+                        removeAt(i);
+                        return true;
+                    }
+                }
+
+                return false;
+            } finally {
+                mLock.unlock();
+            }
+        }
+
+        @Override
+        public void clear() {
+            mLock.lock();
+            try {
+                for (int i = 0; i < mSize; ++i) {
+                    mHeap[i].index = -1;
+                    mHeap[i] = null;
+                }
+
+                for (Node node = mOldest, next; node != null; node = next) {
+                    next = node.next;
+                    node.prev = node.next = null;
+                }
+
+                mSize = 0;
+                mUnmapped = 0;
+                mOldest = mNewest = null;
+                mIndex.clear();
+                mNodes.clear();
+            } finally {
+                mLock.unlock();
+            }
+        }
+
+        @Override
+        public int drainTo(Collection<? super Runnable> c) {
+            return drainTo(c, Integer.MAX_VALUE);
+        }
+
+        @Override
+        public int drainTo(Collection<? super Runnable> c, int maxElements) {
+            mLock.lock();
+            try {
+                int count = 0;
+                for (; count < maxElements && mSize > 0; ++count) {
+                    c.add(removeAt(headIndex()));
+                }
+
+                return count;
+            } finally {
+                mLock.unlock();
+            }
+        }
+
+        /**
+         * Returns an iterator over a snapshot of the pending tasks, in no particular order.
+         */
+        @Override
+        public Iterator<Runnable> iterator() {
+            final Node[] nodes;
+            mLock.lock();
+            try {
+                nodes = Arrays.copyOf(mHeap, mSize);
+            } finally {
+                mLock.unlock();
+            }
+
+            return new Iterator<Runnable>() {
+                private int mIndex;
+
+                @Override
+                public boolean hasNext() {
+                    return (mIndex < nodes.length);
+                }
+
+                @Override
+                public Runnable next() {
+                    if (mIndex >= nodes.length) {
+                        throw new NoSuchElementException();
+                    }
+
+                    return nodes[mIndex++].task;
+                }
+
+                @Override
+                public void remove() {
+                    if (mIndex == 0) {
+                        throw new IllegalStateException();
+                    }
+
+                    removeNode(nodes[mIndex - 1]);
+                }
+            };
+        }
+
+        private void removeNode(Node node) {
+            mLock.lock();
+            try {
+                // The node may have been dequeued since the snapshot.
+                if (node.index >= 0) {
+                    removeAt(node.index);
+                }
+            } finally {
+                mLock.unlock();
+            }
+        }
+
+        /**
+         * Changes the priority of the <em>node</em>. The caller must hold the lock.
+         * @return <tt>true</tt> if the <em>node</em> is pending, <tt>false</tt> otherwise.
+         */
+        private boolean setPriority(Node node, int priority) {
+            if (node == null) {
+                return false;
+            }
+
+            final int index = node.index;
+            node.priority = priority;
+            rank(node);
+            siftDown(index, node);
+            if (node.index == index) {
+                siftUp(index, node);
+            }
+
+            return true;
+        }
+
+        /**
+         * Removes the node at the specified <em>index</em>. The caller must hold the lock.
+         */
+        private Runnable removeAt(int index) {
+            final Node result = mHeap[index];
+            final Node last = mHeap[--mSize];
+            mHeap[mSize] = null;
+            result.index = -1;
+            if (result.task instanceof Task) {
+                // Another task with the same identifier may have replaced the index.
+                final Long id = ((Task)result.task).getId();
+                if (mIndex.get(id) == result) {
+                    mIndex.remove(id);
+                }
+            }
+
+            if (mNodes.get(result.task) == result) {
+                mNodes.remove(result.task);
+            } else {
+                --mUnmapped;
+            }
+
+            if (result.prev != null) {
+                result.prev.next = result.next;
+            } else {
+                mOldest = result.next;
+            }
+
+            if (result.next != null) {
+                result.next.prev = result.prev;
+            } else {
+                mNewest = result.prev;
+            }
+
+            result.prev = result.next = null;
+
+            if (index != mSize) {
+                siftDown(index, last);
+                if (last.index == index) {
+                    siftUp(index, last);
+                }
+            }
+
+            return result.task;
+        }
+
+        /**
+         * Returns the index of the node to dequeue, the head of the heap unless the
+         * oldest node is starved in {@link QueueOrder#LIFO}. The caller must hold the
+         * lock, and the queue must not be empty.
+         */
+        private int headIndex() {
+            return (mOrder == QueueOrder.LIFO && System.nanoTime() - mOldest.time >= STARVATION_NANOS ? mOldest.index : 0);
+        }
+
+        /**
+         * Ranks the <em>node</em> by its aged priority in {@link QueueOrder#FIFO}, the
+         * lower rank runs first. The rank is the enqueue time minus the priority times
+         * {@link #AGING_NANOS}, so a node keeps its place relative to the others while
+         * it waits, and a node enqueued one period later needs a priority one level
+         * higher to run first. The rank is not used in {@link QueueOrder#LIFO}.
+         */
+        private void rank(Node node) {
+            node.rank = (node.time - mEpoch) - node.priority * AGING_NANOS;
+        }
+
+        private boolean precedes(Node one, Node another) {
+            if (mOrder == QueueOrder.FIFO) {
+                return (one.rank != another.rank ? one.rank < another.rank : one.sequence < another.sequence);
+            }
+
+            return (one.priority != another.priority ? one.priority > another.priority : one.sequence > another.sequence);
+        }
+
+        private void siftUp(int index, Node node) {
+            while (index > 0) {
+                final int parent = (index - 1) >>> 1;
+                final Node e = mHeap[parent];
+                if (!precedes(node, e)) {
+                    break;
+                }
+
+                mHeap[index] = e;
+                e.index = index;
+                index = parent;
+            }
+
+            mHeap[index] = node;
+            node.index = index;
+        }
+
+        private void siftDown(int index, Node node) {
+            final int half = mSize >>> 1;
+            while (index < half) {
+                int child = (index << 1) + 1;
+                if (child + 1 < mSize && precedes(mHeap[child + 1], mHeap[child])) {
+                    ++child;
+                }
+
+                final Node e = mHeap[child];
+                if (!precedes(e, node)) {
+                    break;
+                }
+
+                mHeap[index] = e;
+                e.index = index;
+                index = child;
+            }
+
+            mHeap[index] = node;
+            node.index = index;
+        }
+
+        /**
+         * Nested class Node
+         */
+        private static final class Node {
+            /* package */ final Runnable task;
+            /* package */ final long time;
+            /* package */ int priority;
+            /* package */ long sequence;
+            /* package */ long rank;
+            /* package */ int index;
+            /* package */ Node prev;
+            /* package */ Node next;
+
+            /* package */ Node(Runnable task, int priority) {
+                this.task = task;
+                this.priority = priority;
+                this.time = System.nanoTime();
+            }
+        }
+    }
+}
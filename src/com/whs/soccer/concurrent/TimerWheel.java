@@ -0,0 +1,349 @@
+package com.whs.soccer.concurrent;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import android.util.Log;
+
+/**
+ * Class TimerWheel is a hashed timing wheel driven by a single daemon thread.
+ * Scheduling and cancelling a task are <em>O(1)</em>, so it can hold tens of
+ * thousands of pending timers cheaply. The tasks are run in the timer thread,
+ * they must return quickly and hand off any long work to another thread.
+ * @author antoniochen
+ */
+public final class TimerWheel {
+    private static final AtomicInteger nameSuffix = new AtomicInteger();
+
+    private final String mName;
+    private final long mTickMillis;
+    private final Timeout[] mWheel;
+    private final Map<Integer, Timeout> mTags;
+
+    private long mTick;
+    private int mCount;
+    private Thread mThread;
+
+    /**
+     * Constructor
+     * <P>Creates a new <tt>TimerWheel</tt> with the given initial parameters.</P>
+     * @param tickMillis The duration (in milliseconds) of a tick, the accuracy of the timer.
+     * @param wheelSize The number of slots of the wheel, will be rounded up to a power of 2.
+     */
+    public TimerWheel(long tickMillis, int wheelSize) {
+        if (tickMillis <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("The tickMillis and wheelSize must be > 0");
+        }
+
+        int size = 1;
+        while (size < wheelSize) {
+            size <<= 1;
+        }
+
+        mTickMillis = tickMillis;
+        mWheel = new Timeout[size];
+        mTags  = new HashMap<Integer, Timeout>();
+        mName  = "TimerWheel-thread-" + nameSuffix.incrementAndGet();
+    }
+
+    /**
+     * Schedules the specified <em>task</em> to run once after the specified delay.
+     * @param task The <tt>Runnable</tt> to run.
+     * @param delayMillis The delay (in milliseconds) until the <em>task</em> will be run.
+     * @return The {@link Timeout} to cancel the <em>task</em>.
+     * @see #schedule(int, Runnable, long, long, boolean)
+     */
+    public Timeout schedule(Runnable task, long delayMillis) {
+        return schedule(Timeout.NO_TAG, task, delayMillis, 0, false);
+    }
+
+    /**
+     * Schedules the specified <em>task</em> to run after the specified delay,
+     * then repeatedly with the specified <em>period</em>.
+     * @param tag The tag to cancel the <em>task</em> by {@link #cancel(int)}.
+     * @param task The <tt>Runnable</tt> to run.
+     * @param delayMillis The delay (in milliseconds) until the <em>task</em> will be run.
+     * @param periodMillis The period (in milliseconds) between successive runs, or
+     * <tt>0</tt> to run the <em>task</em> once.
+     * @param fixedRate <tt>true</tt> if the period is measured from the scheduled time
+     * of the previous run, <tt>false</tt> if it is measured from the completion of the
+     * previous run.
+     * @return The {@link Timeout} to cancel the <em>task</em>.
+     * @see #schedule(Runnable, long)
+     * @see #cancel(int)
+     */
+    public Timeout schedule(int tag, Runnable task, long delayMillis, long periodMillis, boolean fixedRate) {
+        if (periodMillis < 0) {
+            throw new IllegalArgumentException("The periodMillis must be >= 0");
+        }
+
+        final Timeout timeout = new Timeout(this, tag, task, periodMillis, fixedRate);
+        synchronized (this) {
+            if (tag != Timeout.NO_TAG) {
+                linkTag(timeout);
+            }
+
+            add(timeout, now() + Math.max(delayMillis, 0));
+        }
+
+        return timeout;
+    }
+
+    /**
+     * Cancels all pending tasks with the specified <em>tag</em>, in time
+     * proportional to the number of the cancelled tasks.
+     * @param tag The tag, passed earlier by {@link #schedule(int, Runnable, long, long, boolean)}.
+     * @return The number of the cancelled tasks.
+     * @see Timeout#cancel()
+     */
+    public synchronized int cancel(int tag) {
+        int count = 0;
+        Timeout timeout = mTags.remove(tag);
+        while (timeout != null) {
+            final Timeout next = timeout.nextTag;
+            timeout.prevTag = timeout.nextTag = null;
+            timeout.cancelled = true;
+            if (remove(timeout)) {
+                ++count;
+            }
+
+            timeout = next;
+        }
+
+        return count;
+    }
+
+    /**
+     * Returns the number of pending tasks.
+     * @return The number of pending tasks.
+     */
+    public synchronized int size() {
+        return mCount;
+    }
+
+    private static long now() {
+        return System.nanoTime() / 1000000;
+    }
+
+    private void add(Timeout timeout, long deadline) {
+        // Computes the tick of the deadline, rounds up to the next tick.
+        if (mCount == 0) {
+            // The wheel was idle, catches up the current tick.
+            mTick = Math.max(mTick, now() / mTickMillis);
+        }
+
+        timeout.deadline = deadline;
+        final long ticks = Math.max((deadline + mTickMillis - 1) / mTickMillis, mTick + 1);
+        final int index  = (int)(ticks & (mWheel.length - 1));
+        timeout.rounds = (ticks - mTick - 1) / mWheel.length;
+
+        final Timeout head = mWheel[index];
+        timeout.bucket = index;
+        timeout.prev = null;
+        timeout.next = head;
+        if (head != null) {
+            head.prev = timeout;
+        }
+
+        mWheel[index] = timeout;
+        if (++mCount == 1) {
+            if (mThread == null) {
+                mThread = new Thread(new Worker(), mName);
+                mThread.setDaemon(true);
+                mThread.start();
+            } else {
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Removes the <em>timeout</em> from its bucket.
+     * @return <tt>true</tt> if the <em>timeout</em> was pending.
+     */
+    private boolean remove(Timeout timeout) {
+        if (timeout.bucket == Timeout.NO_BUCKET) {
+            return false;
+        }
+
+        if (timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        } else {
+            mWheel[timeout.bucket] = timeout.next;
+        }
+
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+
+        timeout.prev = timeout.next = null;
+        timeout.bucket = Timeout.NO_BUCKET;
+        --mCount;
+        return true;
+    }
+
+    private void linkTag(Timeout timeout) {
+        final Timeout head = mTags.put(timeout.tag, timeout);
+        timeout.nextTag = head;
+        if (head != null) {
+            head.prevTag = timeout;
+        }
+    }
+
+    private void unlinkTag(Timeout timeout) {
+        if (timeout.tag == Timeout.NO_TAG) {
+            return;
+        }
+
+        if (timeout.prevTag != null) {
+            timeout.prevTag.nextTag = timeout.nextTag;
+        } else if (mTags.get(timeout.tag) == timeout) {
+            if (timeout.nextTag != null) {
+                mTags.put(timeout.tag, timeout.nextTag);
+            } else {
+                mTags.remove(timeout.tag);
+            }
+        }
+
+        if (timeout.nextTag != null) {
+            timeout.nextTag.prevTag = timeout.prevTag;
+        }
+
+        timeout.prevTag = timeout.nextTag = null;
+    }
+
+    /**
+     * Waits for the next tick and collects the expired tasks into <em>expired</em>.
+     */
+    private synchronized void nextTick(List<Timeout> expired) throws InterruptedException {
+        while (true) {
+            if (mCount == 0) {
+                wait();
+                continue;
+            }
+
+            final long sleepMillis = (mTick + 1) * mTickMillis - now();
+            if (sleepMillis <= 0) {
+                break;
+            }
+
+            wait(sleepMillis);
+        }
+
+        final int index = (int)(++mTick & (mWheel.length - 1));
+        for (Timeout timeout = mWheel[index], next; timeout != null; timeout = next) {
+            next = timeout.next;
+            if (timeout.rounds > 0) {
+                --timeout.rounds;
+            } else {
+                remove(timeout);
+                expired.add(timeout);
+                if (timeout.period == 0) {
+                    unlinkTag(timeout);
+                } else if (timeout.fixedRate) {
+                    // Fixed rate, the next run is scheduled from this deadline.
+                    add(timeout, timeout.deadline + timeout.period);
+                }
+            }
+        }
+    }
+
+    private synchronized void reschedule(Timeout timeout) {
+        if (!timeout.cancelled) {
+            // A periodic timeout stays in its tag chain while it is running.
+            add(timeout, now() + timeout.period);
+        }
+    }
+
+    /**
+     * Nested class Worker
+     */
+    private final class Worker implements Runnable {
+        @Override
+        public void run() {
+            final List<Timeout> expired = new ArrayList<Timeout>();
+            while (true) {
+                try {
+                    nextTick(expired);
+                } catch (InterruptedException e) {
+                    Log.w(TimerWheel.class.getName(), "The timer thread was interrupted - " + mName);
+                    continue;
+                }
+
+                for (int i = 0, size = expired.size(); i < size; ++i) {
+                    final Timeout timeout = expired.get(i);
+                    try {
+                        timeout.task.run();
+                    } catch (Throwable e) {
+                        Log.e(TimerWheel.class.getName(), "Couldn't run - " + timeout.task, e);
+                    }
+
+                    if (timeout.period > 0 && !timeout.fixedRate) {
+                        // Fixed delay, the next run is scheduled from the completion.
+                        reschedule(timeout);
+                    }
+                }
+
+                expired.clear();
+            }
+        }
+    }
+
+    /**
+     * Class Timeout is a handle of the task scheduled by {@link TimerWheel}.
+     * @see Timeout#cancel()
+     */
+    public static final class Timeout {
+        /* package */ static final int NO_TAG = Integer.MIN_VALUE;
+        private static final int NO_BUCKET = -1;
+
+        /* package */ final int tag;
+        /* package */ final Runnable task;
+        private final long period;
+        private final boolean fixedRate;
+        private final TimerWheel wheel;
+
+        private int bucket;
+        private long rounds;
+        private long deadline;
+        private boolean cancelled;
+        private Timeout prev, next;
+        private Timeout prevTag, nextTag;
+
+        /* package */ Timeout(TimerWheel wheel, int tag, Runnable task, long period, boolean fixedRate) {
+            this.tag   = tag;
+            this.task  = task;
+            this.wheel = wheel;
+            this.period    = period;
+            this.fixedRate = fixedRate;
+            this.bucket    = NO_BUCKET;
+        }
+
+        /**
+         * Cancels the task in <em>O(1)</em>. If the task is running, it
+         * runs to completion, but a periodic task will not run again.
+         * @return <tt>true</tt> if the task was pending and has been
+         * cancelled, <tt>false</tt> otherwise.
+         */
+        public boolean cancel() {
+            synchronized (wheel) {
+                cancelled = true;
+                wheel.unlinkTag(this);
+                return wheel.remove(this);
+            }
+        }
+
+        /**
+         * Returns whether the task was cancelled.
+         * @return <tt>true</tt> if the task was cancelled, <tt>false</tt> otherwise.
+         */
+        public boolean isCancelled() {
+            synchronized (wheel) {
+                return cancelled;
+            }
+        }
+    }
+}
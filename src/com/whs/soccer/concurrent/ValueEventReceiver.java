@@ -0,0 +1,18 @@
+package com.whs.soccer.concurrent;
+
+/**
+ * This interface may be implemented by an event subscriber to receive the events
+ * posted by {@link EventBus#postValue(int, EventBus.ThreadMode, long)} without
+ * allocating an arguments array or boxing the value.
+ * @author antoniochen
+ * @see EventBus#postValue(int, EventBus.ThreadMode, long)
+ */
+public interface ValueEventReceiver extends EventReceiver {
+    /**
+     * Callback method to be invoked when an event carrying a primitive value was
+     * delivered to this receiver.
+     * @param token The token, passed earlier by {@link EventBus#postValue}.
+     * @param value The event value, passed earlier by {@link EventBus#postValue}.
+     */
+    void onReceiveEvent(int token, long value);
+}
@@ -0,0 +1,273 @@
+package com.whs.soccer.concurrent;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Class WorkerPool is a bounded, work-stealing {@link Executor}. Each worker
+ * thread has its own queue, a task executed from a worker thread is queued to
+ * that worker, the other tasks are queued to a shared queue. An idle worker
+ * takes the tasks of its own queue first, then of the shared queue, then steals
+ * the tasks of the other workers. After {@link #LOCAL_QUANTUM} tasks of its own
+ * queue, a worker takes a task of the shared queue first, so the tasks which
+ * re-execute themselves from a worker, such as the yielding drain loops, don't
+ * starve the shared queue. The worker threads are created on demand up to the
+ * maximum, and terminated after they have been idle for <em>60</em> seconds.
+ * <p>Unlike an unbounded thread pool, the tasks must not block waiting for the
+ * other tasks of the same pool, since all workers may be blocked. A task may
+ * call {@link #isWorkerThread()} to avoid such a wait.</p>
+ * @author antoniochen
+ */
+public final class WorkerPool implements Executor {
+    private static final long KEEP_ALIVE_MILLIS = 60000;
+
+    /**
+     * The number of tasks a worker takes from its own queue before
+     * it takes a task from the shared queue first.
+     */
+    private static final int LOCAL_QUANTUM = 4;
+
+    private final int mMaxThreads;
+    private final ThreadFactory mFactory;
+    private final ArrayDeque<Runnable> mQueue;
+    private final ThreadLocal<Worker> mCurrentWorker;
+
+    /**
+     * The number of queued tasks in all queues.
+     */
+    private final AtomicInteger mQueuedCount;
+
+    /**
+     * The workers, replaced while holding this lock.
+     */
+    private volatile Worker[] mWorkers;
+    private volatile int mIdleCount;
+
+    /**
+     * Constructor
+     * @param maxThreads The maximum number of worker threads, must be > 0.
+     * @param factory The <tt>ThreadFactory</tt> to create the worker threads.
+     */
+    public WorkerPool(int maxThreads, ThreadFactory factory) {
+        if (maxThreads <= 0) {
+            throw new IllegalArgumentException("The maxThreads must be > 0");
+        }
+
+        mFactory = factory;
+        mMaxThreads = maxThreads;
+        mWorkers = new Worker[0];
+        mQueue = new ArrayDeque<Runnable>();
+        mQueuedCount = new AtomicInteger();
+        mCurrentWorker = new ThreadLocal<Worker>();
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (task == null) {
+            throw new NullPointerException("The task == null");
+        }
+
+        final Worker worker = mCurrentWorker.get();
+        if (worker != null) {
+            worker.push(task);
+        } else {
+            synchronized (this) {
+                mQueue.addLast(task);
+            }
+        }
+
+        // The queued count must be incremented before the idle count is read,
+        // and a worker increments the idle count before it reads the queued count,
+        // so either the idle worker sees the task, or this thread wakes it up.
+        mQueuedCount.incrementAndGet();
+        if (mIdleCount > 0 || mWorkers.length < mMaxThreads) {
+            signalWork();
+        }
+    }
+
+    /**
+     * Returns the maximum number of worker threads.
+     * @return The maximum number of worker threads.
+     */
+    public int getMaxThreads() {
+        return mMaxThreads;
+    }
+
+    /**
+     * Returns the current number of worker threads.
+     * @return The number of worker threads.
+     */
+    public int getThreadCount() {
+        return mWorkers.length;
+    }
+
+    /**
+     * Returns whether the current thread is a worker thread of this pool.
+     * @return <tt>true</tt> if the current thread is a worker of this pool.
+     */
+    public boolean isWorkerThread() {
+        return (mCurrentWorker.get() != null);
+    }
+
+    /**
+     * Returns the number of queued tasks.
+     * @return The number of queued tasks.
+     */
+    public int getQueuedCount() {
+        return mQueuedCount.get();
+    }
+
+    private synchronized void signalWork() {
+        if (mIdleCount > 0) {
+            notify();
+        } else if (mWorkers.length < mMaxThreads) {
+            final Worker worker = new Worker();
+            final Thread thread = mFactory.newThread(worker);
+            final Worker[] workers = new Worker[mWorkers.length + 1];
+            System.arraycopy(mWorkers, 0, workers, 0, mWorkers.length);
+            workers[mWorkers.length] = worker;
+            mWorkers = workers;
+            thread.start();
+        }
+    }
+
+    private synchronized void removeWorker(Worker worker) {
+        final Worker[] workers = mWorkers;
+        for (int i = 0; i < workers.length; ++i) {
+            if (workers[i] == worker) {
+                final Worker[] result = new Worker[workers.length - 1];
+                System.arraycopy(workers, 0, result, 0, i);
+                System.arraycopy(workers, i + 1, result, i, result.length - i);
+                mWorkers = result;
+                break;
+            }
+        }
+    }
+
+    private Runnable findTask(Worker self) {
+        Runnable task = null;
+        if (self.mLocalRuns >= LOCAL_QUANTUM) {
+            self.mLocalRuns = 0;
+            synchronized (this) {
+                task = mQueue.pollFirst();
+            }
+        }
+
+        if (task == null && (task = self.poll()) != null) {
+            ++self.mLocalRuns;
+        }
+
+        if (task == null) {
+            self.mLocalRuns = 0;
+            synchronized (this) {
+                task = mQueue.pollFirst();
+            }
+
+            if (task == null) {
+                // Steals a task from the other workers, starts from the next worker
+                // to spread the thieves.
+                final Worker[] workers = mWorkers;
+                for (int i = 0, start = self.hashCode(); i < workers.length && task == null; ++i) {
+                    final Worker victim = workers[((start + i) & Integer.MAX_VALUE) % workers.length];
+                    if (victim != self) {
+                        task = victim.poll();
+                    }
+                }
+            }
+        }
+
+        if (task != null) {
+            mQueuedCount.decrementAndGet();
+        }
+
+        return task;
+    }
+
+    /**
+     * Moves the tasks of the terminating <em>worker</em> to the shared queue
+     * and removes the <em>worker</em>.
+     */
+    private synchronized void retireWorker(Worker worker) {
+        Runnable task;
+        while ((task = worker.poll()) != null) {
+            mQueue.addLast(task);
+        }
+
+        removeWorker(worker);
+    }
+
+    /**
+     * Waits for a task to be queued.
+     * @return <tt>false</tt> if the worker has been idle for the keep alive time.
+     */
+    private synchronized boolean awaitWork(Worker self) throws InterruptedException {
+        ++mIdleCount;
+        try {
+            if (mQueuedCount.get() > 0) {
+                return true;
+            }
+
+            final long start = System.nanoTime();
+            wait(KEEP_ALIVE_MILLIS);
+            if (mQueuedCount.get() == 0 && (System.nanoTime() - start) / 1000000 >= KEEP_ALIVE_MILLIS) {
+                // Removes the worker while it is still idle, so a concurrent
+                // execute either sees the idle worker or starts a new worker.
+                removeWorker(self);
+                return false;
+            }
+
+            return true;
+        } finally {
+            --mIdleCount;
+        }
+    }
+
+    /**
+     * Nested class Worker
+     */
+    private final class Worker implements Runnable {
+        private final ArrayDeque<Runnable> mTasks = new ArrayDeque<Runnable>();
+
+        /**
+         * The number of tasks taken from the own queue in a row, accessed
+         * by the worker thread only.
+         */
+        /* package */ int mLocalRuns;
+
+        public synchronized void push(Runnable task) {
+            mTasks.addLast(task);
+        }
+
+        public synchronized Runnable poll() {
+            return mTasks.pollFirst();
+        }
+
+        @Override
+        public void run() {
+            mCurrentWorker.set(this);
+            try {
+                while (true) {
+                    final Runnable task = findTask(this);
+                    if (task != null) {
+                        task.run();
+                    } else if (!awaitWork(this)) {
+                        break;
+                    }
+                }
+            } catch (InterruptedException e) {
+                // Terminates this worker.
+            } finally {
+                mCurrentWorker.remove();
+                retireWorker(this);
+
+                // If a task threw, the queued tasks of this worker are moved to the
+                // shared queue, they are served by the other workers or a new worker.
+                if (mQueuedCount.get() > 0) {
+                    signalWork();
+                }
+            }
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.whs.soccer.utils;
 
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -164,7 +165,7 @@ public final class Pools {
     private static final class RecyclablePool<T> implements Pool<T> {
         private final Factory<T> factory;
         private final int maxSize;
-        private final LinkedList<T> elements;
+        private final ArrayList<T> elements;
 
         /**
          * Constructor
@@ -180,14 +181,18 @@ public final class Pools {
 
             this.factory  = factory;
             this.maxSize  = maxSize;
-            this.elements = new LinkedList<T>();
+            this.elements = new ArrayList<T>();
         }
 
         @Override
         public T obtain() {
             T element = null;
             synchronized (elements) {
-                element = elements.pollFirst();
+                // The elements is a stack, removes the last element does not allocate.
+                final int size = elements.size();
+                if (size > 0) {
+                    element = elements.remove(size - 1);
+                }
             }
 
             return (element != null ? element : factory.newInstance());
@@ -195,13 +200,13 @@ public final class Pools {
 
         @Override
         public void recycle(T element) {
+            // Clears the element before it can be obtained by another thread.
+            onRecycled(element);
             synchronized (elements) {
                 if (elements.size() < maxSize) {
-                    elements.addFirst(element);
+                    elements.add(element);
                 }
             }
-
-            onRecycled(element);
         }
     }
 